@@ -0,0 +1,46 @@
+package org.laboration3.benchmark;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.service.Warehouse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds the catalogs the benchmarks run against. Every type, first letter and rating is present, products are
+// spread over the last year with some created this month at rating 10, and every tenth product is modified, so
+// that none of the queries fall into their empty-result exception.
+final class Catalog {
+
+    static final String[] NAMES = {
+            "Amulet", "Broadsword", "Chain mail", "Dagger", "Elixir", "Flail", "Gauntlets", "Halberd",
+            "Iron helm", "Javelin", "Kite shield", "Longbow", "Mace", "Nightshade", "Orb", "Pike"
+    };
+    static final ProductType[] TYPES = ProductType.values();
+
+    private Catalog() {}
+
+    static Warehouse fill(Warehouse warehouse, int size) {
+        List<Product> batch = new ArrayList<>(10_000);
+        for (int id = 1; id <= size; id++) {
+            batch.add(product(id));
+            if (batch.size() == 10_000) {
+                warehouse.newProducts(batch);
+                batch.clear();
+            }
+        }
+        warehouse.newProducts(batch);
+
+        for (int id = 10; id <= size; id += 10) {
+            warehouse.modifyProduct(id, NAMES[id % NAMES.length] + " " + id, TYPES[id % TYPES.length], id % 10 + 1);
+        }
+        return warehouse;
+    }
+
+    static Product product(int id) {
+        LocalDate created = LocalDate.now().minusDays((id / 10) % 365);
+        return new Product(id, NAMES[id % NAMES.length] + " " + id, TYPES[id % TYPES.length], id % 10 + 1,
+                created, created);
+    }
+}
@@ -0,0 +1,59 @@
+package org.laboration3.benchmark;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductQuery;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Queries that no index can answer, at several scan pool sizes. Parallelism 1 runs the scan on the calling thread,
+// the speedup of the others is bounded by the cores the benchmark runs on.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelScanBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param
+    StorageEngine engine;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    Warehouse warehouse;
+    ProductQuery query;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        System.setProperty(Warehouse.SCAN_PARALLELISM_PROPERTY, String.valueOf(parallelism));
+        try {
+            warehouse = Catalog.fill(new Warehouse(engine), size);
+        } finally {
+            System.clearProperty(Warehouse.SCAN_PARALLELISM_PROPERTY);
+        }
+        query = new ProductQuery(null, 9, null, null, null, ProductQuery.Sort.NAME, 100);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        warehouse.shutdown();
+    }
+
+    @Benchmark
+    public List<Product> findAllModifiedProducts() {
+        return warehouse.findAllModifiedProducts();
+    }
+
+    @Benchmark
+    public List<Product> findProductsByRating() {
+        return warehouse.findProducts(query);
+    }
+}
@@ -0,0 +1,68 @@
+package org.laboration3.benchmark;
+
+import jakarta.ws.rs.core.Response;
+import org.laboration3.logging.RequestLog;
+import org.laboration3.metrics.MetricRegistry;
+import org.laboration3.resource.ProductResource;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// ProductResource.getProduct called directly, so the difference between the modes is the cost of the request log.
+// SYNC writes every line on the request thread like the resource used to, ASYNC hands every line to the writer thread
+// and SAMPLED only writes the INFO lines of one request in a hundred. Log output goes to a file, not the console.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Dorg.slf4j.simpleLogger.logFile=target/request-log-benchmark.log",
+        "-Dorg.slf4j.simpleLogger.showDateTime=true"
+})
+@Threads(4)
+public class RequestLogBenchmark {
+
+    public enum LogMode {
+        SYNC(1, 0),
+        ASYNC(1, 8192),
+        SAMPLED(0.01, 8192);
+
+        final double sampleRate;
+        final int queueSize;
+
+        LogMode(double sampleRate, int queueSize) {
+            this.sampleRate = sampleRate;
+            this.queueSize = queueSize;
+        }
+    }
+
+    @Param({"10000"})
+    int size;
+
+    @Param
+    LogMode mode;
+
+    RequestLog requestLog;
+    ProductResource resource;
+
+    @Setup(Level.Trial)
+    public void start() {
+        MetricRegistry metrics = new MetricRegistry();
+        requestLog = new RequestLog(metrics, mode.sampleRate, mode.queueSize);
+        resource = new ProductResource(Catalog.fill(new Warehouse(StorageEngine.INDEXED), size), metrics, requestLog);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        requestLog.shutdown();
+    }
+
+    @Benchmark
+    public Response getProduct() {
+        return resource.getProduct(ThreadLocalRandom.current().nextInt(1, size + 1));
+    }
+}
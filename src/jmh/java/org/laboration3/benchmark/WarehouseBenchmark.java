@@ -0,0 +1,212 @@
+package org.laboration3.benchmark;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductBatchResult;
+import org.laboration3.entities.ProductQuery;
+import org.laboration3.entities.ProductType;
+import org.laboration3.entities.ProductVersion;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// One benchmark per public Warehouse query and write, single threaded, for every catalog size and storage engine.
+// The 10M catalogs need a large heap, pass -jvmArgsAppend -Xmx8g or limit the sizes with -p size=1000,100000.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarehouseBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param
+    StorageEngine engine;
+
+    Warehouse warehouse;
+    int nextId;
+    LocalDate createdAfter;
+    Instant historyKeptSince;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        warehouse = Catalog.fill(new Warehouse(engine), size);
+        nextId = size + 1;
+        createdAfter = LocalDate.now().minusDays(30);
+        historyKeptSince = warehouse.historyKeptSince();
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+
+    private ProductType randomType() {
+        return Catalog.TYPES[ThreadLocalRandom.current().nextInt(Catalog.TYPES.length)];
+    }
+
+    // Grows the catalog by one product per call, so long runs measure slightly larger catalogs than the size param.
+    @Benchmark
+    public void newProduct() {
+        int id = nextId++;
+        Product product = Catalog.product(id);
+        warehouse.newProduct(id, product.name(), product.type(), product.rating(), product.created(), product.modified());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public List<ProductBatchResult> newProducts() {
+        List<Product> batch = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            batch.add(Catalog.product(nextId++));
+        }
+        return warehouse.newProducts(batch);
+    }
+
+    @Benchmark
+    public void modifyProduct() {
+        int id = randomId();
+        warehouse.modifyProduct(id, Catalog.NAMES[id % Catalog.NAMES.length] + " " + id, randomType(), id % 11);
+    }
+
+    @Benchmark
+    public List<Product> getAllProducts() {
+        return warehouse.getAllProducts();
+    }
+
+    @Benchmark
+    public void streamAllProducts(Blackhole blackhole) {
+        warehouse.streamAllProducts().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Product> paginateAllProducts() {
+        return warehouse.paginateAllProducts(ThreadLocalRandom.current().nextInt(1, size / 50 + 1), 50);
+    }
+
+    @Benchmark
+    public List<Product> getProductsAfter() {
+        return warehouse.getProductsAfter(randomId(), 50);
+    }
+
+    @Benchmark
+    public Optional<Product> getProductById() {
+        return warehouse.getProductById(randomId());
+    }
+
+    // The oldest instant the history can answer, so every version of the product kept is undone.
+    @Benchmark
+    public Optional<Product> getProductByIdAsOf() {
+        return warehouse.getProductByIdAsOf(randomId(), historyKeptSince);
+    }
+
+    @Benchmark
+    public List<Product> findAllProductsAsOf() {
+        return warehouse.findAllProductsAsOf(historyKeptSince);
+    }
+
+    @Benchmark
+    public Optional<List<ProductVersion>> getProductHistory() {
+        return warehouse.getProductHistory(randomId());
+    }
+
+    // A product name with the digits of its id cut short, matching the product and the ids sharing those digits.
+    @Benchmark
+    public List<Product> findProductsByNamePrefix() {
+        String name = Catalog.product(randomId()).name();
+        return warehouse.findProductsByName(name.substring(0, name.length() - 1), true, 50);
+    }
+
+    // Digits occur in every name, so this verifies the products that all trigrams of an id list.
+    @Benchmark
+    public List<Product> findProductsByNameSubstring() {
+        return warehouse.findProductsByName(Integer.toString(randomId()), false, 50);
+    }
+
+    // Shorter than a trigram, so this verifies the products of the trigrams starting with two digits.
+    @Benchmark
+    public List<Product> findProductsByShortName() {
+        return warehouse.findProductsByName(Integer.toString(ThreadLocalRandom.current().nextInt(10, 100)), false, 50);
+    }
+
+    @Benchmark
+    public List<Product> getProductsByTypeSortedAtoZ() {
+        return warehouse.getProductsByTypeSortedAtoZ(randomType());
+    }
+
+    // Served from the type index and kept in a top-K heap, the newest 20 highly rated products of a type.
+    @Benchmark
+    public List<Product> findProducts() {
+        return warehouse.findProducts(new ProductQuery(randomType(), 8, null, null, null, ProductQuery.Sort.NEWEST, 20));
+    }
+
+    // The same query sorting every match and then cutting it, what findProducts avoids.
+    @Benchmark
+    public List<Product> findProductsFullSort() {
+        return warehouse.findProductsByTypeSortedAtoZ(randomType()).stream()
+                .filter(product -> product.rating() >= 8)
+                .sorted(ProductQuery.Sort.NEWEST.comparator())
+                .limit(20)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Product> getProductsCreatedAfter() {
+        return warehouse.getProductsCreatedAfter(
+                createdAfter.getYear(), createdAfter.getMonthValue(), createdAfter.getDayOfMonth());
+    }
+
+    @Benchmark
+    public List<Product> getAllModifiedProducts() {
+        return warehouse.getAllModifiedProducts();
+    }
+
+    @Benchmark
+    public List<ProductType> getTypesWithAtLeastOneProduct() {
+        return warehouse.getTypesWithAtLeastOneProduct();
+    }
+
+    @Benchmark
+    public long countProductsInCategory() {
+        return warehouse.countProductsInCategory(randomType());
+    }
+
+    @Benchmark
+    public Map<Character, Long> getProductMapWithStartingLettersAndCount() {
+        return warehouse.getProductMapWithStartingLettersAndCount();
+    }
+
+    @Benchmark
+    public Map<ProductType, NavigableMap<Integer, Long>> findRatingDistributionByType() {
+        return warehouse.findRatingDistributionByType();
+    }
+
+    @Benchmark
+    public NavigableMap<YearMonth, Long> countProductsCreatedPerMonth() {
+        YearMonth now = YearMonth.now();
+        return warehouse.countProductsCreatedPerMonth(now.minusMonths(11), now);
+    }
+
+    @Benchmark
+    public Map<ProductType, List<Product>> findNewestProductsByType() {
+        return warehouse.findNewestProductsByType(5);
+    }
+
+    @Benchmark
+    public List<Product> getThisMonthsMaxRankedProductsNewestFirst() {
+        return warehouse.getThisMonthsMaxRankedProductsNewestFirst();
+    }
+}
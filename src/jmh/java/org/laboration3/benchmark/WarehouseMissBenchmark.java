@@ -0,0 +1,79 @@
+package org.laboration3.benchmark;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Queries that match nothing, once through the get methods that throw and once through the find methods that return an
+// empty result. The catalog holds only weapons, so every category other than WEAPON is empty.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarehouseMissBenchmark {
+
+    @Param({"1000"})
+    int size;
+
+    Warehouse warehouse;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        warehouse = new Warehouse(StorageEngine.INDEXED);
+        LocalDate now = LocalDate.now();
+        for (int id = 1; id <= size; id++) {
+            warehouse.newProduct(id, Catalog.NAMES[id % Catalog.NAMES.length], ProductType.WEAPON, 5, now, now);
+        }
+    }
+
+    @Benchmark
+    public Object emptyCategoryThrowing() {
+        try {
+            return warehouse.getProductsByTypeSortedAtoZ(ProductType.ARMOR);
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public List<Product> emptyCategory() {
+        return warehouse.findProductsByTypeSortedAtoZ(ProductType.ARMOR);
+    }
+
+    @Benchmark
+    public Object unknownCursorThrowing() {
+        try {
+            return warehouse.getProductsAfter(-1, 50);
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Optional<List<Product>> unknownCursor() {
+        return warehouse.findProductsAfter(-1, 50);
+    }
+
+    @Benchmark
+    public Object noModifiedProductsThrowing() {
+        try {
+            return warehouse.getAllModifiedProducts();
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public List<Product> noModifiedProducts() {
+        return warehouse.findAllModifiedProducts();
+    }
+}
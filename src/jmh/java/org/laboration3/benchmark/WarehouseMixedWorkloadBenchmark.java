@@ -0,0 +1,81 @@
+package org.laboration3.benchmark;
+
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Point reads, cursor pages and modifications against one shared catalog. Each thread picks its next operation at
+// random from the readPercent mix, the same body runs at several thread counts to show how the locking scales.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarehouseMixedWorkloadBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param
+    StorageEngine engine;
+
+    @Param({"50", "90", "99"})
+    int readPercent;
+
+    Warehouse warehouse;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        warehouse = Catalog.fill(new Warehouse(engine), size);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads01() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object threads02() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads04() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads08() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16() {
+        return operation();
+    }
+
+    private Object operation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = random.nextInt(1, size + 1);
+        int roll = random.nextInt(100);
+
+        if (roll >= readPercent) {
+            warehouse.modifyProduct(id, Catalog.NAMES[id % Catalog.NAMES.length] + " " + id,
+                    Catalog.TYPES[random.nextInt(Catalog.TYPES.length)], id % 11);
+            return id;
+        }
+        if (roll % 10 == 0) {
+            return warehouse.getProductsAfter(id, 20);
+        }
+        return warehouse.getProductById(id);
+    }
+}
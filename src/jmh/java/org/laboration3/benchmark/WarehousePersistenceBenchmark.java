@@ -0,0 +1,88 @@
+package org.laboration3.benchmark;
+
+import org.laboration3.entities.Product;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// The Warehouse methods that only do work when a data directory is set: durable writes, checkpoints and startup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarehousePersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param
+    StorageEngine engine;
+
+    @Param({"0", "2"})
+    long commitIntervalMillis;
+
+    Path dataDirectory;
+    Warehouse warehouse;
+    final AtomicInteger nextId = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        dataDirectory = Files.createTempDirectory("warehouse-benchmark");
+        warehouse = Catalog.fill(open(), size);
+        nextId.set(size + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        warehouse.shutdown();
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private Warehouse open() {
+        return new Warehouse(engine, dataDirectory, Duration.ofMillis(commitIntervalMillis));
+    }
+
+    // Run with several threads, -t 8, to see writes share an fsync.
+    @Benchmark
+    public void newProduct() {
+        int id = nextId.getAndIncrement();
+        Product product = Catalog.product(id);
+        warehouse.newProduct(id, product.name(), product.type(), product.rating(), product.created(), product.modified());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public void checkpoint() {
+        warehouse.checkpoint();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public void startup() {
+        open().shutdown();
+    }
+}
@@ -0,0 +1,135 @@
+package org.laboration3.cache;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.laboration3.metrics.Counter;
+import org.laboration3.metrics.MetricRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Encoded response bodies keyed on endpoint and parameters. Each entry remembers the version of the data it was encoded
+// from and is only served while the caller still sees that version, so a change to one product type leaves the entries
+// of the other types alone. Entries are evicted least recently used first once their bodies exceed the byte limit.
+@ApplicationScoped
+public class ResponseCache {
+
+    public static final String MAX_BYTES_PROPERTY = "warehouse.response-cache.max-bytes";
+
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    private record Entry(long version, byte[] body) {}
+
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Lock lock = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long bytes;
+
+    public ResponseCache() {
+        this(new MetricRegistry());
+    }
+
+    @Inject
+    public ResponseCache(MetricRegistry metrics) {
+        this(metrics, Long.getLong(MAX_BYTES_PROPERTY, 64L * 1024 * 1024));
+    }
+
+    public ResponseCache(MetricRegistry metrics, long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.hits = metrics.counter("response_cache_requests_total", "Response cache lookups", "result", "hit");
+        this.misses = metrics.counter("response_cache_requests_total", "Response cache lookups", "result", "miss");
+        this.evictions = metrics.counter("response_cache_evictions_total",
+                "Response cache entries evicted to stay within the byte limit");
+        metrics.gauge("response_cache_bytes", "Bytes of cached response bodies", this::bytes);
+    }
+
+    // The encoder runs without the lock held, two requests missing the same key at once may both encode it.
+    public byte[] get(String key, long version, Supplier<byte[]> encoder) {
+        byte[] body = get(key, version);
+        if (body == null) {
+            body = encoder.get();
+            put(key, version, body);
+        }
+        return body;
+    }
+
+    // Null when there is no entry for the key or it was encoded from another version.
+    public byte[] get(String key, long version) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version) {
+                hits.increment();
+                return entry.body();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    // Bodies larger than a quarter of the cache are not kept, so one large response cannot flush everything else.
+    public int maxEntryBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, maxBytes / 4);
+    }
+
+    public void put(String key, long version, byte[] body) {
+        if (body.length > maxEntryBytes()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Entry current = entries.get(key);
+            if (current != null) {
+                if (current.version() > version) {
+                    return;
+                }
+                bytes -= current.body().length;
+            }
+            entries.put(key, new Entry(version, body));
+            bytes += body.length;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().body().length;
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.count(), misses.count(), evictions.count(), entries.size(), bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long bytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.laboration3.entities;
+
+public record ProductBatchResult(
+        int index,
+
+        int id,
+
+        boolean added,
+
+        String message) {
+
+}
@@ -0,0 +1,14 @@
+package org.laboration3.entities;
+
+public record ProductChange(
+        long sequence,
+
+        Operation operation,
+
+        Product product) {
+
+    public enum Operation {
+        NEW_PRODUCT,
+        MODIFY_PRODUCT
+    }
+}
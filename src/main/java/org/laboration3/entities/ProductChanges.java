@@ -0,0 +1,14 @@
+package org.laboration3.entities;
+
+import java.util.List;
+
+// lastSequence is the value to ask for the following changes with. changesMissed is set when changes after the
+// requested sequence were already overwritten, a client that sees it has to reload the catalog.
+public record ProductChanges(
+        List<ProductChange> changes,
+
+        long lastSequence,
+
+        boolean changesMissed) {
+
+}
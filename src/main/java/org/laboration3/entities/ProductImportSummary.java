@@ -0,0 +1,12 @@
+package org.laboration3.entities;
+
+public record ProductImportSummary(
+        long lines,
+
+        long added,
+
+        long rejected,
+
+        long malformed) {
+
+}
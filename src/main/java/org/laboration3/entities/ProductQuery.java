@@ -0,0 +1,66 @@
+package org.laboration3.entities;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+// Every field but limit may be null to leave it out. The rating bounds are inclusive, the dates exclusive, and a limit
+// of 0 returns every match. Without a sort the order is whatever the chosen access path yields.
+public record ProductQuery(
+        ProductType type,
+
+        Integer minRating,
+
+        Integer maxRating,
+
+        LocalDate createdAfter,
+
+        LocalDate createdBefore,
+
+        Sort sort,
+
+        int limit) {
+
+    public enum Sort {
+        NAME(Comparator.comparing(Product::name).thenComparingInt(Product::id)),
+        CREATED(Comparator.comparing(Product::created, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingInt(Product::id)),
+        NEWEST(Comparator.comparing(Product::created, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparingInt(Product::id)),
+        RATING(Comparator.comparingInt(Product::rating).reversed().thenComparingInt(Product::id));
+
+        private final Comparator<Product> comparator;
+
+        Sort(Comparator<Product> comparator) {
+            this.comparator = comparator;
+        }
+
+        public Comparator<Product> comparator() {
+            return comparator;
+        }
+    }
+
+    public ProductQuery {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit + ". Limit cannot be negative");
+        }
+        if (minRating != null && maxRating != null && minRating > maxRating) {
+            throw new IllegalArgumentException("Minimum rating " + minRating + " is above maximum rating " + maxRating);
+        }
+    }
+
+    public boolean matches(Product product) {
+        if (type != null && product.type() != type) {
+            return false;
+        }
+        if (minRating != null && product.rating() < minRating) {
+            return false;
+        }
+        if (maxRating != null && product.rating() > maxRating) {
+            return false;
+        }
+        if (createdAfter != null && (product.created() == null || !product.created().isAfter(createdAfter))) {
+            return false;
+        }
+        return createdBefore == null || product.created() != null && product.created().isBefore(createdBefore);
+    }
+}
@@ -0,0 +1,14 @@
+package org.laboration3.entities;
+
+import java.time.Instant;
+
+// The values a product held from validFrom until validUntil. validUntil is null for the current values and validFrom
+// is null for the oldest values kept, which may have been set before the history starts.
+public record ProductVersion(
+        Product product,
+
+        Instant validFrom,
+
+        Instant validUntil) {
+
+}
@@ -1,5 +1,6 @@
 package org.laboration3.exceptions;
 
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
@@ -7,6 +8,8 @@ import jakarta.ws.rs.ext.Provider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Set;
+
 @Provider
 public class ProductValidationExceptionMapper implements ExceptionMapper<ConstraintViolationException> {
 
@@ -14,14 +17,22 @@ public class ProductValidationExceptionMapper implements ExceptionMapper<Constra
 
     @Override
     public Response toResponse(ConstraintViolationException exception) {
-        StringBuilder errorMessage = new StringBuilder("Validation errors: ");
-        exception.getConstraintViolations().forEach(violation ->
-                errorMessage.append(violation.getMessage()).append("; ")
-        );
+        String errorMessage = message(exception.getConstraintViolations());
 
         logger.error("{}", errorMessage);
         return Response.status(Response.Status.BAD_REQUEST)
-                .entity(errorMessage.toString())
+                .entity(errorMessage)
                 .build();
     }
+
+    // Also used for the items of a product batch. The messages are sorted so that the same product always reads the
+    // same.
+    public static String message(Set<? extends ConstraintViolation<?>> violations) {
+        StringBuilder errorMessage = new StringBuilder("Validation errors: ");
+        violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .forEach(message -> errorMessage.append(message).append("; "));
+        return errorMessage.toString();
+    }
 }
@@ -0,0 +1,46 @@
+package org.laboration3.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Sampling is decided once per request, so a sampled request keeps all of its lines. Warnings and errors are always
+// written.
+public final class EndpointLog {
+
+    private final RequestLog requestLog;
+    private final Logger logger;
+    private final double sampleRate;
+    private final RequestLogger sampled;
+    private final RequestLogger unsampled;
+
+    EndpointLog(RequestLog requestLog, Logger logger, double sampleRate) {
+        this.requestLog = requestLog;
+        this.logger = logger;
+        this.sampleRate = sampleRate;
+        this.sampled = new RequestLogger(this, true);
+        this.unsampled = new RequestLogger(this, false);
+    }
+
+    public RequestLogger begin() {
+        if (sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            return sampled;
+        }
+        return unsampled;
+    }
+
+    boolean isEnabled(Level level) {
+        return switch (level) {
+            case ERROR -> logger.isErrorEnabled();
+            case WARN -> logger.isWarnEnabled();
+            case INFO -> logger.isInfoEnabled();
+            case DEBUG -> logger.isDebugEnabled();
+            case TRACE -> logger.isTraceEnabled();
+        };
+    }
+
+    void write(Level level, String template, Object[] arguments) {
+        requestLog.write(new RequestLog.Event(logger, level, template, arguments));
+    }
+}
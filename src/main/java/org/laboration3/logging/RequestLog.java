@@ -0,0 +1,148 @@
+package org.laboration3.logging;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.laboration3.metrics.Counter;
+import org.laboration3.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Request threads only decide whether a line is wanted and queue the template with its arguments. A single writer
+// thread formats and writes the queued lines in batches. When the queue is full lines are dropped and counted,
+// request threads never wait for the log.
+@ApplicationScoped
+public class RequestLog {
+
+    public static final String SAMPLE_RATE_PROPERTY = "warehouse.request-log.sample-rate";
+    public static final String QUEUE_SIZE_PROPERTY = "warehouse.request-log.queue-size";
+
+    private static final int BATCH_SIZE = 256;
+
+    record Event(Logger logger, Level level, String template, Object[] arguments) {}
+
+    private final double defaultSampleRate;
+    private final BlockingQueue<Event> queue;
+    private final Counter dropped;
+    private final Map<String, EndpointLog> endpoints = new ConcurrentHashMap<>();
+    private final Lock writerLock = new ReentrantLock();
+    private volatile Thread writer;
+    private volatile boolean stopped;
+
+    public RequestLog() {
+        this(new MetricRegistry());
+    }
+
+    @Inject
+    public RequestLog(MetricRegistry metrics) {
+        this(metrics, Double.parseDouble(System.getProperty(SAMPLE_RATE_PROPERTY, "0.01")),
+                Integer.getInteger(QUEUE_SIZE_PROPERTY, 8192));
+    }
+
+    // A queue size of 0 writes every line on the calling thread.
+    public RequestLog(MetricRegistry metrics, double defaultSampleRate, int queueSize) {
+        this.defaultSampleRate = defaultSampleRate;
+        this.queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : null;
+        this.dropped = metrics.counter("request_log_dropped_total", "Request log lines dropped because the queue was full");
+    }
+
+    // The sample rate of an endpoint can be set with warehouse.request-log.<endpoint>.sample-rate.
+    public EndpointLog endpoint(String endpoint, Logger logger) {
+        EndpointLog log = endpoints.get(endpoint);
+        if (log != null) {
+            return log;
+        }
+
+        return endpoints.computeIfAbsent(endpoint, name -> {
+            String sampleRate = System.getProperty("warehouse.request-log." + name + ".sample-rate");
+            return new EndpointLog(this, logger, sampleRate == null ? defaultSampleRate : Double.parseDouble(sampleRate));
+        });
+    }
+
+    void write(Event event) {
+        if (queue == null) {
+            log(event);
+            return;
+        }
+
+        if (writer == null) {
+            startWriter();
+        }
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void startWriter() {
+        writerLock.lock();
+        try {
+            if (writer == null && !stopped) {
+                writer = new Thread(this::drain, "request-log-writer");
+                writer.setDaemon(true);
+                writer.start();
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+            } catch (InterruptedException e) {
+                stopped = true;
+            }
+
+            for (Event event : batch) {
+                log(event);
+            }
+            batch.clear();
+        }
+    }
+
+    private static void log(Event event) {
+        Logger logger = event.logger();
+        switch (event.level()) {
+            case ERROR -> logger.error(event.template(), event.arguments());
+            case WARN -> logger.warn(event.template(), event.arguments());
+            case INFO -> logger.info(event.template(), event.arguments());
+            case DEBUG -> logger.debug(event.template(), event.arguments());
+            case TRACE -> logger.trace(event.template(), event.arguments());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerLock.lock();
+        try {
+            stopped = true;
+        } finally {
+            writerLock.unlock();
+        }
+
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
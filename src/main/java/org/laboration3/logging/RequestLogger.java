@@ -0,0 +1,64 @@
+package org.laboration3.logging;
+
+import org.slf4j.event.Level;
+
+// Arguments are formatted on the writer thread, so they must not change after being logged.
+public final class RequestLogger {
+
+    private final EndpointLog endpoint;
+    private final boolean sampled;
+
+    RequestLogger(EndpointLog endpoint, boolean sampled) {
+        this.endpoint = endpoint;
+        this.sampled = sampled;
+    }
+
+    public boolean isInfoEnabled() {
+        return sampled && endpoint.isEnabled(Level.INFO);
+    }
+
+    // The fixed arity variants keep unsampled requests from allocating an argument array.
+    public void info(String template) {
+        if (isInfoEnabled()) {
+            endpoint.write(Level.INFO, template, new Object[0]);
+        }
+    }
+
+    public void info(String template, Object argument) {
+        if (isInfoEnabled()) {
+            endpoint.write(Level.INFO, template, new Object[]{argument});
+        }
+    }
+
+    public void info(String template, Object first, Object second) {
+        if (isInfoEnabled()) {
+            endpoint.write(Level.INFO, template, new Object[]{first, second});
+        }
+    }
+
+    public void info(String template, Object... arguments) {
+        if (isInfoEnabled()) {
+            endpoint.write(Level.INFO, template, arguments);
+        }
+    }
+
+    // Progress and outcome of bulk operations, written at INFO whether or not the request is sampled. Those requests
+    // are rare, and one that is not logged cannot be followed at all.
+    public void progress(String template, Object... arguments) {
+        if (endpoint.isEnabled(Level.INFO)) {
+            endpoint.write(Level.INFO, template, arguments);
+        }
+    }
+
+    public void warn(String template, Object... arguments) {
+        if (endpoint.isEnabled(Level.WARN)) {
+            endpoint.write(Level.WARN, template, arguments);
+        }
+    }
+
+    public void error(String template, Object... arguments) {
+        if (endpoint.isEnabled(Level.ERROR)) {
+            endpoint.write(Level.ERROR, template, arguments);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.laboration3.metrics;
+
+public final class EndpointMetrics {
+
+    private final Histogram latency;
+    private final Counter errors;
+
+    EndpointMetrics(Histogram latency, Counter errors) {
+        this.latency = latency;
+        this.errors = errors;
+    }
+
+    public void recordSince(long startNanos) {
+        latency.recordSince(startNanos);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+}
@@ -0,0 +1,58 @@
+package org.laboration3.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed latency buckets from 10 microseconds to 10 seconds. Each bucket is its own LongAdder, so recording is a scan
+// over the bounds and one striped increment, without locks or allocation.
+public final class Histogram {
+
+    static final long[] BOUNDS_NANOS = {
+            micros(10), micros(25), micros(50), micros(100), micros(250), micros(500),
+            millis(1), micros(2_500), millis(5), millis(10), millis(25), millis(50), millis(100), millis(250), millis(500),
+            millis(1_000), millis(2_500), millis(5_000), millis(10_000)
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // Non-cumulative, the last bucket holds everything above the largest bound.
+    long[] bucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    private static long micros(long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
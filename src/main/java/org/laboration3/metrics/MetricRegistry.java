@@ -0,0 +1,150 @@
+package org.laboration3.metrics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Metrics are registered once, usually from a constructor, and the returned Counter or Histogram is kept in a field,
+// so the hot path only records. Registering the same name and labels again returns the existing metric.
+@ApplicationScoped
+public class MetricRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    private record Family(String name, String help, Type type, Map<String, Object> metricsByLabels) {}
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final Lock lock = new ReentrantLock();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, help, Type.COUNTER, labels, Counter::new);
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) register(name, help, Type.HISTOGRAM, labels, Histogram::new);
+    }
+
+    // A gauge registered again reads from the new supplier.
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        lock.lock();
+        try {
+            family(name, help, Type.GAUGE).metricsByLabels().put(labels(labels), value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public EndpointMetrics endpoint(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        if (metrics != null) {
+            return metrics;
+        }
+
+        return endpoints.computeIfAbsent(endpoint, name -> new EndpointMetrics(
+                histogram("http_request_duration_seconds", "Time spent handling requests", "endpoint", name),
+                counter("http_request_errors_total", "Requests answered with an error status", "endpoint", name)));
+    }
+
+    private Object register(String name, String help, Type type, String[] labels, Supplier<Object> factory) {
+        lock.lock();
+        try {
+            return family(name, help, type).metricsByLabels().computeIfAbsent(labels(labels), key -> factory.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type, new LinkedHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type());
+        }
+        return family;
+    }
+
+    private static String labels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+
+        StringJoiner joined = new StringJoiner(",");
+        for (int i = 0; i < labels.length; i += 2) {
+            joined.add(labels[i] + "=\"" + escape(labels[i + 1]) + "\"");
+        }
+        return joined.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Prometheus text exposition format, version 0.0.4.
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        lock.lock();
+        try {
+            for (Family family : families.values()) {
+                out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+                out.append("# TYPE ").append(family.name()).append(' ')
+                        .append(family.type().name().toLowerCase()).append('\n');
+                family.metricsByLabels().forEach((labels, metric) -> write(out, family, labels, metric));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return out.toString();
+    }
+
+    private static void write(StringBuilder out, Family family, String labels, Object metric) {
+        switch (family.type()) {
+            case COUNTER -> sample(out, family.name(), labels, ((Counter) metric).count());
+            case GAUGE -> sample(out, family.name(), labels, ((LongSupplier) metric).getAsLong());
+            case HISTOGRAM -> {
+                Histogram histogram = (Histogram) metric;
+                long[] counts = histogram.bucketCounts();
+                String separator = labels.isEmpty() ? "" : ",";
+                long cumulative = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    cumulative += counts[i];
+                    String bound = i < Histogram.BOUNDS_NANOS.length ? seconds(Histogram.BOUNDS_NANOS[i]) : "+Inf";
+                    sample(out, family.name() + "_bucket", labels + separator + "le=\"" + bound + "\"", cumulative);
+                }
+                out.append(family.name()).append("_sum");
+                braces(out, labels);
+                out.append(' ').append(seconds(histogram.sumNanos())).append('\n');
+                sample(out, family.name() + "_count", labels, cumulative);
+            }
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        braces(out, labels);
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void braces(StringBuilder out, String labels) {
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,52 @@
+package org.laboration3.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class DataDirectory {
+
+    private static final Pattern LOG_FILE = Pattern.compile("products-(\\d+)\\.log");
+
+    private final Path directory;
+
+    public DataDirectory(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path snapshotFile() {
+        return directory.resolve("products.snapshot");
+    }
+
+    public Path logFile(long generation) {
+        return directory.resolve(String.format("products-%010d.log", generation));
+    }
+
+    public List<Long> logGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> LOG_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    public void deleteLogsBefore(long generation) throws IOException {
+        for (long logGeneration : logGenerations()) {
+            if (logGeneration < generation) {
+                Files.deleteIfExists(logFile(logGeneration));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
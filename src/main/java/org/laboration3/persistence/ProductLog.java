@@ -0,0 +1,292 @@
+package org.laboration3.persistence;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+public class ProductLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductLog.class);
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final byte NO_TYPE = -1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    public enum Operation {
+        NEW_PRODUCT,
+        MODIFY_PRODUCT
+    }
+
+    private final FileChannel channel;
+    private final long commitIntervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingWrites = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final Thread syncThread;
+
+    private long writtenPosition;
+    private long syncedPosition;
+    private IOException syncFailure;
+    private boolean closed;
+
+    private ProductLog(FileChannel channel, Duration commitInterval) throws IOException {
+        this.channel = channel;
+        this.commitIntervalNanos = commitInterval.toNanos();
+        this.writtenPosition = channel.size();
+        this.syncedPosition = writtenPosition;
+        this.syncThread = new Thread(this::syncLoop, "product-log-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    public static ProductLog open(Path file, Duration commitInterval) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new ProductLog(channel, commitInterval);
+    }
+
+    // Stops at the first incomplete or corrupt record, which is what a crash in the middle of a write leaves behind,
+    // and cuts the file there so that new records are appended after the last intact one.
+    public void replay(BiConsumer<Operation, Product> consumer) throws IOException {
+        lock.lock();
+        try {
+            long position = 0;
+            channel.position(0);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            CRC32 crc = new CRC32();
+
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || position + HEADER_SIZE + length > channel.size()) {
+                        break;
+                    }
+                    payload = in.readNBytes(length);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(payload);
+                if (payload.length != length || (int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                Operation operation = Operation.values()[record.get()];
+                consumer.accept(operation, decode(record));
+                position += HEADER_SIZE + length;
+            }
+
+            if (position < channel.size()) {
+                logger.warn("Discarding {} bytes of incomplete product log records", channel.size() - position);
+                channel.truncate(position);
+                channel.force(true);
+            }
+            channel.position(position);
+            writtenPosition = position;
+            syncedPosition = position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long append(Operation operation, Product product) {
+        ByteBuffer record = encode(operation, product);
+
+        lock.lock();
+        try {
+            checkOpen();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            writtenPosition = channel.position();
+            pendingWrites.signal();
+            return writtenPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to product log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Callers wait for the sync thread instead of forcing the channel themselves, so one fsync covers every record
+    // appended while the previous one was running.
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (syncedPosition < position) {
+                if (syncFailure != null) {
+                    throw new UncheckedIOException("Could not sync product log", syncFailure);
+                }
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (writtenPosition == syncedPosition && !closed) {
+                    pendingWrites.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (commitIntervalNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(commitIntervalNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            lock.lock();
+            try {
+                target = writtenPosition;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                channel.force(false);
+                lock.lock();
+                try {
+                    syncedPosition = Math.max(syncedPosition, target);
+                    synced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (IOException e) {
+                logger.error("Could not sync product log: {}", e.getMessage());
+                lock.lock();
+                try {
+                    syncFailure = e;
+                    synced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Product log is closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingWrites.signalAll();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            syncThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            channel.force(true);
+            syncedPosition = writtenPosition;
+        } catch (IOException e) {
+            syncFailure = e;
+            throw e;
+        } finally {
+            synced.signalAll();
+            lock.unlock();
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer encode(Operation operation, Product product) {
+        byte[] name = product.name() == null ? null : product.name().getBytes(StandardCharsets.UTF_8);
+        int length = 1 + Integer.BYTES + 1 + Integer.BYTES + Long.BYTES * 2 + Integer.BYTES
+                + (name == null ? 0 : name.length);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.position(HEADER_SIZE);
+        record.put((byte) operation.ordinal());
+        record.putInt(product.id());
+        record.put(product.type() == null ? NO_TYPE : (byte) product.type().ordinal());
+        record.putInt(product.rating());
+        record.putLong(product.created() == null ? NO_DATE : product.created().toEpochDay());
+        record.putLong(product.modified() == null ? NO_DATE : product.modified().toEpochDay());
+        record.putInt(name == null ? -1 : name.length);
+        if (name != null) {
+            record.put(name);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static Product decode(ByteBuffer record) {
+        int id = record.getInt();
+        byte type = record.get();
+        int rating = record.getInt();
+        long created = record.getLong();
+        long modified = record.getLong();
+        int nameLength = record.getInt();
+        String name = null;
+        if (nameLength >= 0) {
+            byte[] bytes = new byte[nameLength];
+            record.get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return new Product(
+                id,
+                name,
+                type == NO_TYPE ? null : ProductType.values()[type],
+                rating,
+                created == NO_DATE ? null : LocalDate.ofEpochDay(created),
+                modified == NO_DATE ? null : LocalDate.ofEpochDay(modified)
+        );
+    }
+}
@@ -0,0 +1,173 @@
+package org.laboration3.persistence;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Layout: header, one fixed-width record per product in insertion order, then a table of the distinct names.
+public final class ProductSnapshot {
+
+    private static final int MAGIC = 0x50534e50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES * 2;
+    private static final int RECORD_SIZE = Integer.BYTES + 1 + Integer.BYTES * 4;
+    private static final byte NO_TYPE = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_NAME = -1;
+
+    private ProductSnapshot() {}
+
+    public static void write(Path file, long logGeneration, Iterator<Product> products) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            Map<String, Integer> nameIndexes = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            int count = 0;
+
+            channel.position(HEADER_SIZE);
+            while (products.hasNext()) {
+                Product product = products.next();
+                if (buffer.remaining() < RECORD_SIZE) {
+                    drain(channel, buffer);
+                }
+
+                int nameIndex = NO_NAME;
+                if (product.name() != null) {
+                    nameIndex = nameIndexes.computeIfAbsent(product.name(), name -> {
+                        names.add(name);
+                        return names.size() - 1;
+                    });
+                }
+
+                buffer.putInt(product.id());
+                buffer.put(product.type() == null ? NO_TYPE : (byte) product.type().ordinal());
+                buffer.putInt(product.rating());
+                buffer.putInt(epochDay(product.created()));
+                buffer.putInt(epochDay(product.modified()));
+                buffer.putInt(nameIndex);
+                count++;
+            }
+
+            long nameTableOffset = channel.position() + buffer.position();
+            if (buffer.remaining() < Integer.BYTES) {
+                drain(channel, buffer);
+            }
+            buffer.putInt(names.size());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < Integer.BYTES + bytes.length) {
+                    drain(channel, buffer);
+                }
+                if (buffer.remaining() < Integer.BYTES + bytes.length) {
+                    buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+                }
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+            drain(channel, buffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(logGeneration)
+                    .putInt(count)
+                    .putLong(nameTableOffset)
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    // The rename only survives a crash once the directory is forced, and the logs the snapshot replaces are deleted
+    // right after it. Windows cannot open a directory as a channel, NTFS journals the rename instead.
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name", "").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    // Returns the generation of the first log that holds changes made after the snapshot.
+    public static long load(Path file, Consumer<Product> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large to be mapped");
+            }
+
+            MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+                throw new IOException(file + " is not a product snapshot");
+            }
+            long logGeneration = snapshot.getLong();
+            int count = snapshot.getInt();
+            int nameTableOffset = Math.toIntExact(snapshot.getLong());
+
+            ByteBuffer nameTable = snapshot.duplicate().position(nameTableOffset);
+            String[] names = new String[nameTable.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] bytes = new byte[nameTable.getInt()];
+                nameTable.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            for (int i = 0; i < count; i++) {
+                int id = snapshot.getInt();
+                byte type = snapshot.get();
+                int rating = snapshot.getInt();
+                int created = snapshot.getInt();
+                int modified = snapshot.getInt();
+                int nameIndex = snapshot.getInt();
+
+                consumer.accept(new Product(
+                        id,
+                        nameIndex == NO_NAME ? null : names[nameIndex],
+                        type == NO_TYPE ? null : ProductType.values()[type],
+                        rating,
+                        date(created),
+                        date(modified)
+                ));
+            }
+
+            return logGeneration;
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -0,0 +1,74 @@
+package org.laboration3.resource;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.laboration3.entities.ProductChange;
+import org.laboration3.entities.ProductChanges;
+import org.laboration3.service.Warehouse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+// Pushes the change feed to one SSE client from its own thread, started through RequestExecutor.start. The thread only
+// reads the feed, so a slow client holds up nobody but itself. A client that falls further behind than the feed
+// reaches back gets a "missed" event and continues with the oldest change still kept.
+final class ChangeStream implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStream.class);
+
+    private static final int BATCH_SIZE = 256;
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(15);
+
+    private final Warehouse warehouse;
+    private final SseEventSink sink;
+    private final Sse sse;
+    private long sequence;
+
+    ChangeStream(Warehouse warehouse, SseEventSink sink, Sse sse, long since) {
+        this.warehouse = warehouse;
+        this.sink = sink;
+        this.sse = sse;
+        this.sequence = since;
+    }
+
+    @Override
+    public void run() {
+        try (sink) {
+            while (!sink.isClosed()) {
+                ProductChanges changes = warehouse.getChangesSince(sequence, BATCH_SIZE);
+                if (changes.changesMissed()) {
+                    send(sse.newEventBuilder()
+                            .name("missed")
+                            .data(String.valueOf(sequence))
+                            .build());
+                }
+                for (ProductChange change : changes.changes()) {
+                    send(sse.newEventBuilder()
+                            .id(String.valueOf(change.sequence()))
+                            .name(change.operation().name())
+                            .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                            .data(ProductJson.change(change))
+                            .build());
+                }
+                sequence = changes.lastSequence();
+
+                if (changes.changes().isEmpty() && !warehouse.awaitChangesAfter(sequence, KEEP_ALIVE_INTERVAL)) {
+                    send(sse.newEventBuilder().comment("keep-alive").build());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompletionException | IOException e) {
+            logger.debug("Change stream closed after sequence {}: {}", sequence, e.getMessage());
+        }
+    }
+
+    private void send(OutboundSseEvent event) {
+        sink.send(event).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,34 @@
+package org.laboration3.resource;
+
+import jakarta.ws.rs.core.Response;
+import org.laboration3.logging.EndpointLog;
+import org.laboration3.logging.RequestLog;
+import org.laboration3.logging.RequestLogger;
+import org.laboration3.metrics.EndpointMetrics;
+import org.laboration3.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+// The metrics and request log of one resource method.
+final class Endpoint {
+
+    private final EndpointMetrics metrics;
+    private final EndpointLog log;
+
+    Endpoint(String name, Logger logger, MetricRegistry metrics, RequestLog requestLog) {
+        this.metrics = metrics.endpoint(name);
+        this.log = requestLog.endpoint(name, logger);
+    }
+
+    RequestLogger begin() {
+        return log.begin();
+    }
+
+    // Streamed bodies are written after this returns, so their latency only covers preparing the response.
+    Response observe(long start, Response response) {
+        metrics.recordSince(start);
+        if (response.getStatus() >= 400) {
+            metrics.error();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,27 @@
+package org.laboration3.resource;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+import org.laboration3.metrics.MetricRegistry;
+
+@Path("/metrics")
+public class MetricsResource {
+
+    private MetricRegistry metrics;
+
+    public MetricsResource() {}
+
+    @Inject
+    public MetricsResource(MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @GET
+    @Produces(MetricRegistry.CONTENT_TYPE)
+    public Response scrape() {
+        return Response.ok(metrics.scrape()).build();
+    }
+}
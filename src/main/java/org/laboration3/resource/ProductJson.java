@@ -0,0 +1,262 @@
+package org.laboration3.resource;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonReaderFactory;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductChange;
+import org.laboration3.entities.ProductChanges;
+import org.laboration3.entities.ProductType;
+import org.laboration3.entities.ProductVersion;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+final class ProductJson {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    // The shortest a product and its separating comma render to in a JSON array, with every nullable field null.
+    static final int MIN_PRODUCT_BYTES = 75;
+
+    private static final JsonGeneratorFactory generators = Json.createGeneratorFactory(Map.of());
+    private static final JsonReaderFactory readers = Json.createReaderFactory(Map.of());
+
+    private ProductJson() {}
+
+    static StreamingOutput jsonArray(Stream<Product> products) {
+        return output -> {
+            try (Stream<Product> stream = products) {
+                JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8);
+                generator.writeStartArray();
+                stream.forEach(product -> write(generator, product));
+                generator.writeEnd();
+                generator.flush();
+            }
+        };
+    }
+
+    // Streams like jsonArray and passes the complete body on when it stayed within captureLimit bytes.
+    static StreamingOutput jsonArray(Stream<Product> products, int captureLimit, Consumer<byte[]> captured) {
+        StreamingOutput body = jsonArray(products);
+        return output -> {
+            CapturingOutputStream capture = new CapturingOutputStream(output, captureLimit);
+            body.write(capture);
+            if (capture.captured != null) {
+                captured.accept(capture.captured.toByteArray());
+            }
+        };
+    }
+
+    static byte[] jsonArrayBytes(List<Product> products) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            generator.writeStartArray();
+            products.forEach(product -> write(generator, product));
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    static byte[] changes(ProductChanges changes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            generator.writeStartObject();
+            generator.writeStartArray("changes");
+            changes.changes().forEach(change -> write(generator, change));
+            generator.writeEnd();
+            generator.write("lastSequence", changes.lastSequence());
+            generator.write("changesMissed", changes.changesMissed());
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    // {"WEAPON": {"1": 3, "7": 12}, ...}
+    static byte[] ratingDistribution(Map<ProductType, ? extends Map<Integer, Long>> counts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            generator.writeStartObject();
+            counts.forEach((type, countByRating) -> {
+                generator.writeStartObject(type.name());
+                countByRating.forEach((rating, count) -> generator.write(rating.toString(), count));
+                generator.writeEnd();
+            });
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    // One member per key in the order of the map, named by the key's toString.
+    static byte[] counts(Map<?, Long> counts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            generator.writeStartObject();
+            counts.forEach((key, count) -> generator.write(key.toString(), count));
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    static byte[] productsByType(Map<ProductType, List<Product>> productsByType) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            generator.writeStartObject();
+            productsByType.forEach((type, products) -> {
+                generator.writeStartArray(type.name());
+                products.forEach(product -> write(generator, product));
+                generator.writeEnd();
+            });
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    // {"keptSince": "...", "versions": [{"validFrom": ..., "validUntil": null, "product": {...}}, ...]}
+    static byte[] history(List<ProductVersion> versions, Instant keptSince) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            generator.writeStartObject()
+                    .write("keptSince", keptSince.toString())
+                    .writeStartArray("versions");
+            for (ProductVersion version : versions) {
+                generator.writeStartObject();
+                writeNullable(generator, "validFrom", instant(version.validFrom()));
+                writeNullable(generator, "validUntil", instant(version.validUntil()));
+                generator.writeKey("product");
+                write(generator, version.product());
+                generator.writeEnd();
+            }
+            generator.writeEnd();
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    static String change(ProductChange change) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = generators.createGenerator(output, StandardCharsets.UTF_8)) {
+            write(generator, change);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void write(JsonGenerator generator, ProductChange change) {
+        generator.writeStartObject()
+                .write("sequence", change.sequence())
+                .write("operation", change.operation().name())
+                .writeKey("product");
+        write(generator, change.product());
+        generator.writeEnd();
+    }
+
+    static StreamingOutput ndjson(Stream<Product> products) {
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            try (Stream<Product> stream = products) {
+                Iterator<Product> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    JsonGenerator generator = generators.createGenerator(writer);
+                    write(generator, iterator.next());
+                    generator.flush();
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+        };
+    }
+
+    static void write(JsonGenerator generator, Product product) {
+        generator.writeStartObject()
+                .write("id", product.id());
+        writeNullable(generator, "name", product.name());
+        writeNullable(generator, "type", product.type() == null ? null : product.type().name());
+        generator.write("rating", product.rating());
+        writeNullable(generator, "created", date(product.created()));
+        writeNullable(generator, "modified", date(product.modified()));
+        generator.writeEnd();
+    }
+
+    static Product read(String json, LocalDate date) {
+        try (JsonReader reader = readers.createReader(new StringReader(json))) {
+            JsonObject product = reader.readObject();
+            String type = product.getString("type", null);
+
+            return new Product(
+                    product.getInt("id"),
+                    product.getString("name", null),
+                    type == null ? null : ProductType.valueOf(type.toUpperCase()),
+                    product.getInt("rating", 0),
+                    date,
+                    date
+            );
+        }
+    }
+
+    private static final class CapturingOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream output, int limit) {
+            super(output);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (captured == null) {
+                return;
+            }
+            if (captured.size() + len > limit) {
+                captured = null;
+                return;
+            }
+            captured.write(b, off, len);
+        }
+    }
+
+    private static String date(LocalDate date) {
+        return date == null ? null : date.toString();
+    }
+
+    private static String instant(Instant instant) {
+        return instant == null ? null : instant.toString();
+    }
+
+    private static void writeNullable(JsonGenerator generator, String name, String value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value);
+        }
+    }
+}
@@ -3,36 +3,137 @@ package org.laboration3.resource;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.laboration3.cache.ResponseCache;
 import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductBatchResult;
+import org.laboration3.entities.ProductChanges;
+import org.laboration3.entities.ProductImportSummary;
+import org.laboration3.entities.ProductQuery;
 import org.laboration3.entities.ProductType;
+import org.laboration3.logging.RequestLog;
+import org.laboration3.logging.RequestLogger;
+import org.laboration3.metrics.MetricRegistry;
 import org.laboration3.service.Warehouse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+// Every resource method suspends the request and has RequestExecutor run the overload of the same name without the
+// AsyncResponse, which can also be called directly.
 @Path("/products")
 public class ProductResource {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductResource.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    private static final int MAX_CHANGES = 1000;
+    private static final int MAX_RESULTS = 1000;
+    private static final int STREAM_RETRY_AFTER_SECONDS = 5;
+    private static final int DEFAULT_NEWEST = 5;
+    private static final Map<String, ProductQuery.Sort> SORTS = Arrays.stream(ProductQuery.Sort.values())
+            .collect(Collectors.toUnmodifiableMap(ProductQuery.Sort::name, Function.identity()));
+    private static final Map<String, ProductType> PRODUCT_TYPES = Arrays.stream(ProductType.values())
+            .collect(Collectors.toUnmodifiableMap(ProductType::name, Function.identity()));
+
     private Warehouse warehouse;
+    private ResponseCache responseCache;
+    private RequestExecutor requestExecutor;
+    private Endpoint addProductEndpoint;
+    private Endpoint addProductsEndpoint;
+    private Endpoint importProductsEndpoint;
+    private Endpoint allProductsEndpoint;
+    private Endpoint streamAllProductsEndpoint;
+    private Endpoint getProductEndpoint;
+    private Endpoint productHistoryEndpoint;
+    private Endpoint searchProductsEndpoint;
+    private Endpoint queryProductsEndpoint;
+    private Endpoint ratingStatsEndpoint;
+    private Endpoint createdStatsEndpoint;
+    private Endpoint newestStatsEndpoint;
+    private Endpoint allProductsInCategoryEndpoint;
+    private Endpoint changesEndpoint;
+    private Endpoint changeEventsEndpoint;
 
     public ProductResource() {}
 
-    @Inject
     public ProductResource(Warehouse warehouse) {
+        this(warehouse, new MetricRegistry());
+    }
+
+    public ProductResource(Warehouse warehouse, MetricRegistry metrics) {
+        this(warehouse, metrics, new RequestLog(metrics, 1, 0));
+    }
+
+    public ProductResource(Warehouse warehouse, MetricRegistry metrics, RequestLog requestLog) {
+        this(warehouse, metrics, requestLog, new ResponseCache(metrics),
+                new RequestExecutor(RequestExecutor.Threads.CONTAINER));
+    }
+
+    @Inject
+    public ProductResource(Warehouse warehouse, MetricRegistry metrics, RequestLog requestLog,
+                           ResponseCache responseCache, RequestExecutor requestExecutor) {
         this.warehouse = warehouse;
+        this.responseCache = responseCache;
+        this.requestExecutor = requestExecutor;
+        this.addProductEndpoint = new Endpoint("addProduct", logger, metrics, requestLog);
+        this.addProductsEndpoint = new Endpoint("addProducts", logger, metrics, requestLog);
+        this.importProductsEndpoint = new Endpoint("importProducts", logger, metrics, requestLog);
+        this.allProductsEndpoint = new Endpoint("allProducts", logger, metrics, requestLog);
+        this.streamAllProductsEndpoint = new Endpoint("streamAllProducts", logger, metrics, requestLog);
+        this.getProductEndpoint = new Endpoint("getProduct", logger, metrics, requestLog);
+        this.productHistoryEndpoint = new Endpoint("productHistory", logger, metrics, requestLog);
+        this.searchProductsEndpoint = new Endpoint("searchProducts", logger, metrics, requestLog);
+        this.queryProductsEndpoint = new Endpoint("queryProducts", logger, metrics, requestLog);
+        this.ratingStatsEndpoint = new Endpoint("ratingStats", logger, metrics, requestLog);
+        this.createdStatsEndpoint = new Endpoint("createdStats", logger, metrics, requestLog);
+        this.newestStatsEndpoint = new Endpoint("newestStats", logger, metrics, requestLog);
+        this.allProductsInCategoryEndpoint = new Endpoint("allProductsInCategory", logger, metrics, requestLog);
+        this.changesEndpoint = new Endpoint("changes", logger, metrics, requestLog);
+        this.changeEventsEndpoint = new Endpoint("changeEvents", logger, metrics, requestLog);
     }
 
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response addProduct(@Valid Product product) {
-        logger.info("Trying to add product: {}", product.name());
+    public void addProduct(@Valid Product product, @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> addProduct(product));
+    }
+
+    public Response addProduct(Product product) {
+        long start = System.nanoTime();
+        RequestLogger log = addProductEndpoint.begin();
+        log.info("Trying to add product: {}", product.name());
         try {
             LocalDate date = LocalDate.now();
 
@@ -44,80 +145,618 @@ public class ProductResource {
                     date,
                     date
             );
-            logger.info("Product {} added", product.name());
-            return Response.status(Response.Status.CREATED).build();
+            log.info("Product {} added", product.name());
+            return addProductEndpoint.observe(start, Response.status(Response.Status.CREATED).build());
         } catch (Exception e) {
-            logger.error("{}", e.getMessage());
-            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+            log.error("{}", e.getMessage());
+            return addProductEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
         }
     }
 
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void addProducts(List<Product> products, @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> addProducts(products));
+    }
+
+    public Response addProducts(List<Product> products) {
+        long start = System.nanoTime();
+        RequestLogger log = addProductsEndpoint.begin();
+        if (products == null || products.isEmpty()) {
+            log.warn("Received empty product batch");
+            return addProductsEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity("Product batch cannot be empty").build());
+        }
+
+        LocalDate date = LocalDate.now();
+        List<Product> batch = products.stream()
+                .map(product -> product == null ? null : new Product(
+                        product.id(),
+                        product.name(),
+                        product.type(),
+                        product.rating(),
+                        date,
+                        date
+                ))
+                .toList();
+
+        List<ProductBatchResult> results = warehouse.newProducts(batch);
+
+        long added = countAdded(results);
+        log.progress("Added {} of {} products in batch", added, results.size());
+        return addProductsEndpoint.observe(start, Response.status(Response.Status.OK).entity(results).build());
+    }
+
+    @POST
+    @Path("/import")
+    @Consumes(ProductJson.NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void importProducts(InputStream body, @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> importProducts(body));
+    }
+
+    public Response importProducts(InputStream body) {
+        long start = System.nanoTime();
+        RequestLogger log = importProductsEndpoint.begin();
+        log.progress("Starting product import");
+        LocalDate date = LocalDate.now();
+        List<Product> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        long lines = 0;
+        long added = 0;
+        long rejected = 0;
+        long malformed = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                lines++;
+
+                try {
+                    chunk.add(ProductJson.read(line, date));
+                } catch (RuntimeException e) {
+                    malformed++;
+                }
+
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    long chunkAdded = countAdded(warehouse.newProducts(chunk));
+                    added += chunkAdded;
+                    rejected += chunk.size() - chunkAdded;
+                    chunk.clear();
+                    log.progress("Imported {} products from {} lines so far", added, lines);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                long chunkAdded = countAdded(warehouse.newProducts(chunk));
+                added += chunkAdded;
+                rejected += chunk.size() - chunkAdded;
+            }
+        } catch (IOException e) {
+            log.error("Product import aborted after {} lines: {}", lines, e.getMessage());
+            return importProductsEndpoint.observe(start, Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ProductImportSummary(lines, added, rejected, malformed))
+                    .build());
+        }
+
+        log.progress("Product import finished: {} lines, {} added, {} rejected, {} malformed", lines, added, rejected, malformed);
+        return importProductsEndpoint.observe(start, Response.status(Response.Status.OK)
+                .entity(new ProductImportSummary(lines, added, rejected, malformed))
+                .build());
+    }
+
+    // Strong, since the same version always renders to the same bytes. The representation name keeps the JSON and
+    // NDJSON responses of one URL apart.
+    private static EntityTag etag(String representation, long version) {
+        return new EntityTag(representation + "-" + Long.toHexString(version));
+    }
+
+    // If-None-Match is read here rather than through Request.evaluatePreconditions, since the injected Request only
+    // resolves on the container thread and the overloads may run on a virtual thread. Uses the weak comparison that
+    // RFC 9110 prescribes for If-None-Match.
+    private static boolean matches(String ifNoneMatch, EntityTag etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("\"" + etag.getValue() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // An ISO date reads as the end of that day in the local time zone, the state after every change made on it. A
+    // date-time with an offset reads as that instant.
+    private static Instant asOf(String asOf) {
+        if (asOf.length() > 10) {
+            return OffsetDateTime.parse(asOf).toInstant();
+        }
+        return LocalDate.parse(asOf).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusNanos(1);
+    }
+
+    private static long countAdded(List<ProductBatchResult> results) {
+        return results.stream().filter(ProductBatchResult::added).count();
+    }
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response allProducts(@QueryParam("page") int page, @QueryParam("size") int size) {
-        logger.info("Trying to list all products");
+    public void allProducts(@QueryParam("page") int page,
+                            @QueryParam("size") int size,
+                            @QueryParam("after") Integer after,
+                            @QueryParam("asOf") String asOf,
+                            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                            @Context UriInfo uriInfo,
+                            @Suspended AsyncResponse response) {
+        URI requestUri = uriInfo.getRequestUri();
+        requestExecutor.execute(response, () -> asOf == null
+                ? allProducts(page, size, after, requestUri, ifNoneMatch)
+                : allProducts(asOf));
+    }
+
+    // Every product as it was at asOf, neither paged nor cached.
+    public Response allProducts(String asOf) {
+        long start = System.nanoTime();
+        RequestLogger log = allProductsEndpoint.begin();
+        log.info("Trying to list all products as of {}", asOf);
+        try {
+            List<Product> products = warehouse.findAllProductsAsOf(asOf(asOf));
+            log.info("Listed {} products as of {}", products.size(), asOf);
+            return allProductsEndpoint.observe(start,
+                    Response.ok(ProductJson.jsonArrayBytes(products), MediaType.APPLICATION_JSON_TYPE).build());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Invalid as-of product listing: {}", e.getMessage());
+            return allProductsEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
+        }
+    }
+
+    public Response allProducts(int page, int size, Integer after, URI requestUri, String ifNoneMatch) {
+        long start = System.nanoTime();
+        RequestLogger log = allProductsEndpoint.begin();
+        log.info("Trying to list all products");
         try {
-            List<Product> products;
+            long version = warehouse.catalogVersion();
+            EntityTag etag = etag("products", version);
+            if (matches(ifNoneMatch, etag)) {
+                log.info("Products not modified");
+                return allProductsEndpoint.observe(start, Response.notModified(etag).build());
+            }
+
+            if (after != null) {
+                int pageSize = size > 0 ? size : DEFAULT_PAGE_SIZE;
+                log.info("Listing products after id {} with page size {}", after, pageSize);
+                Optional<List<Product>> remaining = warehouse.findProductsAfter(after, pageSize + 1);
+                if (remaining.isEmpty()) {
+                    log.warn("Product with id: {} not found", after);
+                    return allProductsEndpoint.observe(start, Response.status(Response.Status.NOT_FOUND)
+                            .entity("Product with id: " + after + " not found")
+                            .build());
+                }
+                List<Product> products = remaining.get();
+
+                Response.ResponseBuilder response = Response.status(Response.Status.OK).tag(etag);
+                if (products.size() > pageSize) {
+                    products = products.subList(0, pageSize);
+                    response.link(UriBuilder.fromUri(requestUri)
+                            .replaceQueryParam("page")
+                            .replaceQueryParam("size", pageSize)
+                            .replaceQueryParam("after", products.get(pageSize - 1).id())
+                            .build(), "next");
+                }
+
+                log.info("All Products successfully listed");
+                return allProductsEndpoint.observe(start, response.entity(products).build());
+            }
 
+            Object body;
             if (page !=0 && size !=0) {
-                logger.info("Listing all products on page {} and with page size {}", page, size);
-                products = warehouse.paginateAllProducts(page, size);
+                log.info("Listing all products on page {} and with page size {}", page, size);
+                body = responseCache.get("products?page=" + page + "&size=" + size, version,
+                        () -> ProductJson.jsonArrayBytes(warehouse.findProductsPage(page, size)));
             } else {
-                products = warehouse.getAllProducts();
+                body = responseCache.get("products", version);
+                if (body == null) {
+                    // A catalog that cannot fit a cache entry is not copied, that would cost every request up to an
+                    // entry of memory for nothing.
+                    boolean fits = (long) warehouse.productCount() * ProductJson.MIN_PRODUCT_BYTES
+                            <= responseCache.maxEntryBytes();
+                    body = fits
+                            ? ProductJson.jsonArray(warehouse.streamAllProducts(), responseCache.maxEntryBytes(),
+                                    bytes -> responseCache.put("products", version, bytes))
+                            : ProductJson.jsonArray(warehouse.streamAllProducts());
+                }
             }
 
-            logger.info("All Products successfully listed");
-            return Response.status(Response.Status.OK).entity(products).build();
+            log.info("All Products successfully listed");
+            return allProductsEndpoint.observe(start, Response.status(Response.Status.OK)
+                    .entity(body)
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .tag(etag)
+                    .build());
         } catch (Exception e) {
-            logger.error("Failed to list all products: {}", e.getMessage());
-            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+            log.error("Failed to list all products: {}", e.getMessage());
+            return allProductsEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
+        }
+    }
+
+    @GET
+    @Produces(ProductJson.NDJSON + ";qs=0.5")
+    public void streamAllProducts(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                                  @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> streamAllProducts(ifNoneMatch));
+    }
+
+    public Response streamAllProducts(String ifNoneMatch) {
+        long start = System.nanoTime();
+        RequestLogger log = streamAllProductsEndpoint.begin();
+        log.info("Trying to stream all products");
+        try {
+            EntityTag etag = etag("products-ndjson", warehouse.catalogVersion());
+            if (matches(ifNoneMatch, etag)) {
+                log.info("Products not modified");
+                return streamAllProductsEndpoint.observe(start, Response.notModified(etag).build());
+            }
+
+            Response response = Response.status(Response.Status.OK)
+                    .entity(ProductJson.ndjson(warehouse.streamAllProducts()))
+                    .type(ProductJson.NDJSON)
+                    .tag(etag)
+                    .build();
+            log.info("All Products successfully streamed");
+            return streamAllProductsEndpoint.observe(start, response);
+        } catch (Exception e) {
+            log.error("Failed to stream all products: {}", e.getMessage());
+            return streamAllProductsEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
         }
     }
 
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getProduct(@PathParam("id") int id) {
-        logger.info("Trying to find product with id: {}", id);
+    public void getProduct(@PathParam("id") int id,
+                           @QueryParam("asOf") String asOf,
+                           @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> asOf == null ? getProduct(id) : getProduct(id, asOf));
+    }
+
+    public Response getProduct(int id) {
+        long start = System.nanoTime();
+        RequestLogger log = getProductEndpoint.begin();
+        log.info("Trying to find product with id: {}", id);
 
-        return warehouse.getProductById(id)
+        Response response = warehouse.getProductById(id)
                 .map(product -> {
-                    logger.info("Product with id: {} found: {}", id, product);
+                    log.info("Product with id: {} found: {}", id, product);
                     return Response.status(Response.Status.OK).entity(product).build();
                 })
                 .orElseGet(() -> {
-                    logger.warn("Product with id: {} not found", id);
+                    log.warn("Product with id: {} not found", id);
                     return Response.status(Response.Status.NOT_FOUND)
                             .entity("Product with id: " + id + " not found")
                             .build();
                 });
+        return getProductEndpoint.observe(start, response);
+    }
+
+    public Response getProduct(int id, String asOf) {
+        long start = System.nanoTime();
+        RequestLogger log = getProductEndpoint.begin();
+        log.info("Trying to find product with id: {} as of {}", id, asOf);
+
+        Optional<Product> product;
+        try {
+            product = warehouse.getProductByIdAsOf(id, asOf(asOf));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Invalid as-of product request: {}", e.getMessage());
+            return getProductEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
+        }
+
+        if (product.isEmpty()) {
+            log.warn("Product with id: {} not found as of {}", id, asOf);
+            return getProductEndpoint.observe(start, Response.status(Response.Status.NOT_FOUND)
+                    .entity("Product with id: " + id + " not found as of " + asOf)
+                    .build());
+        }
+        log.info("Product with id: {} found as of {}: {}", id, asOf, product.get());
+        return getProductEndpoint.observe(start, Response.status(Response.Status.OK).entity(product.get()).build());
+    }
+
+    // Newest first, each version with the instants it was current from and until.
+    @GET
+    @Path("/{id}/history")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void productHistory(@PathParam("id") int id, @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> productHistory(id));
+    }
+
+    public Response productHistory(int id) {
+        long start = System.nanoTime();
+        RequestLogger log = productHistoryEndpoint.begin();
+        log.info("Trying to list the history of product with id: {}", id);
+
+        Response response = warehouse.getProductHistory(id)
+                .map(versions -> {
+                    log.info("Listed {} versions of product with id: {}", versions.size(), id);
+                    return Response.ok(ProductJson.history(versions, warehouse.historyKeptSince()),
+                            MediaType.APPLICATION_JSON_TYPE).build();
+                })
+                .orElseGet(() -> {
+                    log.warn("Product with id: {} not found", id);
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity("Product with id: " + id + " not found")
+                            .build();
+                });
+        return productHistoryEndpoint.observe(start, response);
+    }
+
+    @GET
+    @Path("/stats/ratings")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void ratingStats(@Suspended AsyncResponse response) {
+        requestExecutor.execute(response, this::ratingStats);
+    }
+
+    public Response ratingStats() {
+        long start = System.nanoTime();
+        RequestLogger log = ratingStatsEndpoint.begin();
+        log.info("Trying to count products per type and rating");
+
+        byte[] body = ProductJson.ratingDistribution(warehouse.findRatingDistributionByType());
+        log.info("Counted products per type and rating");
+        return ratingStatsEndpoint.observe(start, Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build());
+    }
+
+    // per=day takes ISO dates and defaults to the last 30 days, per=month takes yyyy-MM and defaults to the last 12
+    // months. Both ends are included.
+    @GET
+    @Path("/stats/created")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void createdStats(@QueryParam("from") String from,
+                             @QueryParam("to") String to,
+                             @QueryParam("per") @DefaultValue("day") String per,
+                             @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> createdStats(from, to, per));
+    }
+
+    public Response createdStats(String from, String to, String per) {
+        long start = System.nanoTime();
+        RequestLogger log = createdStatsEndpoint.begin();
+        log.info("Trying to count products created per {} from {} to {}", per, from, to);
+
+        try {
+            Map<?, Long> counts;
+            if (per.equalsIgnoreCase("day")) {
+                LocalDate last = to == null ? LocalDate.now() : LocalDate.parse(to);
+                LocalDate first = from == null ? last.minusDays(29) : LocalDate.parse(from);
+                counts = warehouse.countProductsCreatedPerDay(first, last);
+            } else if (per.equalsIgnoreCase("month")) {
+                YearMonth last = to == null ? YearMonth.now() : YearMonth.parse(to);
+                YearMonth first = from == null ? last.minusMonths(11) : YearMonth.parse(from);
+                counts = warehouse.countProductsCreatedPerMonth(first, last);
+            } else {
+                throw new IllegalArgumentException("Invalid period: " + per + ". Period must be day or month");
+            }
+
+            log.info("Counted products created on {} {}s", counts.size(), per);
+            return createdStatsEndpoint.observe(start,
+                    Response.ok(ProductJson.counts(counts), MediaType.APPLICATION_JSON_TYPE).build());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Invalid created stats request: {}", e.getMessage());
+            return createdStatsEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
+        }
+    }
+
+    @GET
+    @Path("/stats/newest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void newestStats(@QueryParam("limit") int limit, @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> newestStats(limit));
+    }
+
+    public Response newestStats(int limit) {
+        long start = System.nanoTime();
+        RequestLogger log = newestStatsEndpoint.begin();
+        int perType = limit > 0 ? Math.min(limit, MAX_RESULTS) : DEFAULT_NEWEST;
+        log.info("Trying to list the {} newest products of every type", perType);
+
+        byte[] body = ProductJson.productsByType(warehouse.findNewestProductsByType(perType));
+        log.info("Listed the newest products of every type");
+        return newestStatsEndpoint.observe(start, Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build());
+    }
+
+    // Every parameter is optional, dates are ISO-8601 and exclusive, rating bounds inclusive. Without sort the order
+    // follows the access path the Warehouse picks.
+    @GET
+    @Path("/query")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void queryProducts(@QueryParam("type") String type,
+                              @QueryParam("minRating") Integer minRating,
+                              @QueryParam("maxRating") Integer maxRating,
+                              @QueryParam("createdAfter") String createdAfter,
+                              @QueryParam("createdBefore") String createdBefore,
+                              @QueryParam("sort") String sort,
+                              @QueryParam("limit") int limit,
+                              @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () ->
+                queryProducts(type, minRating, maxRating, createdAfter, createdBefore, sort, limit));
+    }
+
+    public Response queryProducts(String type, Integer minRating, Integer maxRating, String createdAfter,
+                                  String createdBefore, String sort, int limit) {
+        long start = System.nanoTime();
+        RequestLogger log = queryProductsEndpoint.begin();
+        log.info("Trying to query products of type {} rated {} to {} created after {} and before {} sorted by {}",
+                type, minRating, maxRating, createdAfter, createdBefore, sort);
+
+        ProductQuery query;
+        try {
+            ProductType productType = null;
+            if (type != null) {
+                productType = PRODUCT_TYPES.get(type.toUpperCase());
+                if (productType == null) {
+                    throw new IllegalArgumentException("Invalid product category: " + type);
+                }
+            }
+            ProductQuery.Sort order = null;
+            if (sort != null) {
+                order = SORTS.get(sort.toUpperCase());
+                if (order == null) {
+                    throw new IllegalArgumentException("Invalid sort: " + sort + ". Sort must be one of "
+                            + Arrays.toString(ProductQuery.Sort.values()));
+                }
+            }
+            query = new ProductQuery(productType, minRating, maxRating,
+                    createdAfter == null ? null : LocalDate.parse(createdAfter),
+                    createdBefore == null ? null : LocalDate.parse(createdBefore),
+                    order, limit > 0 ? Math.min(limit, MAX_RESULTS) : DEFAULT_PAGE_SIZE);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Invalid product query: {}", e.getMessage());
+            return queryProductsEndpoint.observe(start,
+                    Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build());
+        }
+
+        List<Product> products = warehouse.findProducts(query);
+        log.info("Query matched {} products", products.size());
+        return queryProductsEndpoint.observe(start,
+                Response.ok(ProductJson.jsonArrayBytes(products), MediaType.APPLICATION_JSON_TYPE).build());
+    }
+
+    // Names starting with q come first, prefix=true leaves out the names that only contain it.
+    @GET
+    @Path("/search")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void searchProducts(@QueryParam("q") String query,
+                               @QueryParam("prefix") boolean prefixOnly,
+                               @QueryParam("limit") int limit,
+                               @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> searchProducts(query, prefixOnly, limit));
+    }
+
+    public Response searchProducts(String query, boolean prefixOnly, int limit) {
+        long start = System.nanoTime();
+        RequestLogger log = searchProductsEndpoint.begin();
+        log.info("Trying to search products for: {}", query);
+
+        if (query == null || query.isBlank()) {
+            log.warn("Search without a query");
+            return searchProductsEndpoint.observe(start, Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Query parameter q is required")
+                    .build());
+        }
+
+        List<Product> products = warehouse.findProductsByName(query, prefixOnly,
+                limit > 0 ? Math.min(limit, MAX_RESULTS) : DEFAULT_PAGE_SIZE);
+        log.info("Found {} products for: {}", products.size(), query);
+        return searchProductsEndpoint.observe(start,
+                Response.ok(ProductJson.jsonArrayBytes(products), MediaType.APPLICATION_JSON_TYPE).build());
     }
 
     @GET
     @Path("/category/{category}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response allProductsInCategory(@PathParam("category") String category) {
-        logger.info("Trying to list all products in category: {}", category);
+    public void allProductsInCategory(@PathParam("category") String category,
+                                      @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                                      @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> allProductsInCategory(category, ifNoneMatch));
+    }
+
+    public Response allProductsInCategory(String category, String ifNoneMatch) {
+        long start = System.nanoTime();
+        RequestLogger log = allProductsInCategoryEndpoint.begin();
+        log.info("Trying to list all products in category: {}", category);
 
         try {
-            ProductType productType = ProductType.valueOf(category.toUpperCase());
+            ProductType productType = PRODUCT_TYPES.get(category.toUpperCase());
+            if (productType == null) {
+                log.warn("Invalid product category: {}", category);
+                return allProductsInCategoryEndpoint.observe(start, Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Invalid product category: " + category)
+                        .build());
+            }
 
-            List<Product> products = warehouse.getProductsByTypeSortedAtoZ(productType);
+            long version = warehouse.typeVersion(productType);
+            EntityTag etag = etag("products-" + productType.name().toLowerCase(), version);
+            if (matches(ifNoneMatch, etag)) {
+                log.info("Products in category {} not modified", productType);
+                return allProductsInCategoryEndpoint.observe(start, Response.notModified(etag).build());
+            }
 
-            logger.info("Products successfully listed");
-            return Response.ok(products).build();
-        } catch (IllegalArgumentException e) {
+            byte[] body = responseCache.get("products/category/" + productType, version,
+                    () -> ProductJson.jsonArrayBytes(warehouse.findProductsByTypeSortedAtoZ(productType)));
 
-            logger.error("{}", e.getMessage());
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity("Invalid product category: " + category)
-                    .build();
+            log.info("Products in category {} successfully listed", productType);
+            return allProductsInCategoryEndpoint.observe(start,
+                    Response.ok(body, MediaType.APPLICATION_JSON_TYPE).tag(etag).build());
         } catch (Exception e) {
 
-            logger.error("An unexpected error occurred while fetching products: {}", e.getMessage(), e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+            log.error("An unexpected error occurred while fetching products: {}", e.getMessage(), e);
+            return allProductsInCategoryEndpoint.observe(start, Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("An error occurred while fetching products")
-                    .build();
+                    .build());
+        }
+    }
+
+    @GET
+    @Path("/changes")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void changes(@QueryParam("since") long since,
+                        @QueryParam("limit") int limit,
+                        @Suspended AsyncResponse response) {
+        requestExecutor.execute(response, () -> changes(since, limit));
+    }
+
+    public Response changes(long since, int limit) {
+        long start = System.nanoTime();
+        RequestLogger log = changesEndpoint.begin();
+        log.info("Trying to list changes after sequence {}", since);
+
+        ProductChanges changes = warehouse.getChangesSince(since, limit > 0 ? Math.min(limit, MAX_CHANGES) : MAX_CHANGES);
+        if (changes.changesMissed()) {
+            log.warn("Changes after sequence {} are no longer kept", since);
+        }
+
+        log.info("Listed {} changes up to sequence {}", changes.changes().size(), changes.lastSequence());
+        return changesEndpoint.observe(start,
+                Response.ok(ProductJson.changes(changes), MediaType.APPLICATION_JSON_TYPE).build());
+    }
+
+    // A reconnecting client resumes after the Last-Event-ID it sends, which takes precedence over since.
+    @GET
+    @Path("/changes")
+    @Produces(MediaType.SERVER_SENT_EVENTS + ";qs=0.5")
+    public void changeEvents(@QueryParam("since") long since,
+                             @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) Long lastEventId,
+                             @Context SseEventSink sink,
+                             @Context Sse sse) {
+        long start = System.nanoTime();
+        RequestLogger log = changeEventsEndpoint.begin();
+        long from = lastEventId != null ? lastEventId : since;
+        log.info("Streaming changes after sequence {}", from);
+
+        if (!requestExecutor.start(new ChangeStream(warehouse, sink, sse, from))) {
+            log.warn("Too many change streams are open, rejecting the stream");
+            throw new ServiceUnavailableException(changeEventsEndpoint.observe(start,
+                    Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, STREAM_RETRY_AFTER_SECONDS)
+                            .build()));
         }
+        changeEventsEndpoint.observe(start, Response.ok().build());
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package org.laboration3.resource;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Decides which threads ProductResource works on. CONTAINER keeps the work on the container's request thread. VIRTUAL
+// hands it to a new virtual thread and releases the request thread, so requests waiting for an fsync or a contended
+// write lock do not hold platform threads. Warehouse only uses java.util.concurrent locks, which unmount a waiting
+// virtual thread instead of pinning it to its carrier. How VIRTUAL compares at 10k concurrent connections is still to
+// be measured, see ProductResourceLoadBenchmark.
+@ApplicationScoped
+public class RequestExecutor {
+
+    public static final String THREADS_PROPERTY = "warehouse.request-threads";
+    public static final String MAX_STREAMS_PROPERTY = "warehouse.max-streams";
+
+    public enum Threads {
+        CONTAINER,
+        VIRTUAL
+    }
+
+    private final Threads threads;
+    private final ExecutorService virtualThreads;
+    private final ExecutorService streamThreads;
+    private final Semaphore streams;
+    private final AtomicInteger streamThreadCount = new AtomicInteger();
+
+    public RequestExecutor() {
+        this(Threads.valueOf(System.getProperty(THREADS_PROPERTY, Threads.CONTAINER.name()).toUpperCase()));
+    }
+
+    public RequestExecutor(Threads threads) {
+        this.threads = threads;
+        this.virtualThreads = threads == Threads.VIRTUAL ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.streamThreads = virtualThreads != null ? virtualThreads : Executors.newCachedThreadPool(this::newStreamThread);
+        this.streams = new Semaphore(Integer.getInteger(MAX_STREAMS_PROPERTY, 256));
+    }
+
+    private Thread newStreamThread(Runnable task) {
+        Thread thread = new Thread(task, "warehouse-stream-" + streamThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public Threads threads() {
+        return threads;
+    }
+
+    void execute(AsyncResponse response, Supplier<Response> work) {
+        if (virtualThreads == null) {
+            resume(response, work);
+            return;
+        }
+        virtualThreads.execute(() -> resume(response, work));
+    }
+
+    private static void resume(AsyncResponse response, Supplier<Response> work) {
+        try {
+            response.resume(work.get());
+        } catch (RuntimeException e) {
+            response.resume(e);
+        }
+    }
+
+    // For work that outlives the request, such as an event stream. Gets a virtual thread, or in CONTAINER mode a
+    // daemon platform thread from a shared pool, since the container's threads are not meant to be held. At most
+    // maxStreams of them run at a time, false when that many are running already.
+    boolean start(Runnable task) {
+        if (!streams.tryAcquire()) {
+            return false;
+        }
+        try {
+            streamThreads.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    streams.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            streams.release();
+            throw e;
+        }
+    }
+
+    // Platform stream threads are interrupted, which ends their streams.
+    @PreDestroy
+    public void shutdown() {
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        } else {
+            streamThreads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// One version for the whole catalog and one per product type, bumped after a change is visible in the store. Readers
+// take the version before they query, so a version never labels data older than the change it stands for.
+// The counters start from the startup time shifted left by 20 bits, so versions keep growing across restarts unless
+// the previous run made more than a million changes per millisecond of uptime.
+class CatalogVersions {
+    private final AtomicLong catalog;
+    private final AtomicLongArray types = new AtomicLongArray(ProductType.values().length);
+
+    CatalogVersions() {
+        long initial = System.currentTimeMillis() << 20;
+        catalog = new AtomicLong(initial);
+        for (int i = 0; i < types.length(); i++) {
+            types.set(i, initial);
+        }
+    }
+
+    long catalog() {
+        return catalog.get();
+    }
+
+    long of(ProductType type) {
+        return types.get(type.ordinal());
+    }
+
+    // oldProduct is null for new products.
+    void changed(Product oldProduct, Product newProduct) {
+        if (oldProduct != null && oldProduct.type() != null && oldProduct.type() != newProduct.type()) {
+            types.incrementAndGet(oldProduct.type().ordinal());
+        }
+        if (newProduct.type() != null) {
+            types.incrementAndGet(newProduct.type().ordinal());
+        }
+        catalog.incrementAndGet();
+    }
+}
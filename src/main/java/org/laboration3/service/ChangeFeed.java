@@ -0,0 +1,111 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductChange;
+import org.laboration3.entities.ProductChanges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// A ring buffer of the latest changes. A writer claims the next sequence number and stores its change in the slot for
+// that number, it never waits for readers or other writers. Readers walk forward from the last sequence they saw and
+// stop at the first slot that is not filled yet. A slot that already holds a later sequence means the reader was
+// lapped and the changes in between are gone.
+// Sequences start from the startup time in seconds shifted left by 20 bits. A sequence from before a restart then reads
+// as missed unless the previous run published over a million changes per second of uptime, and sequences stay below
+// 2^53 so that JavaScript clients can hold them.
+class ChangeFeed {
+    private final AtomicReferenceArray<ProductChange> slots;
+    private final int mask;
+    private final long first;
+    private final AtomicLong lastClaimed;
+    private final Set<Thread> waiting = ConcurrentHashMap.newKeySet();
+
+    ChangeFeed(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        lastClaimed = new AtomicLong(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) << 20);
+        first = lastClaimed.get() + 1;
+    }
+
+    void publish(ProductChange.Operation operation, Product product) {
+        long sequence = lastClaimed.incrementAndGet();
+        ProductChange change = new ProductChange(sequence, operation, product);
+        int slot = (int) (sequence & mask);
+
+        // A writer that stalled for a whole lap must not overwrite the change of the writer after it.
+        ProductChange current;
+        do {
+            current = slots.get(slot);
+            if (current != null && current.sequence() > sequence) {
+                break;
+            }
+        } while (!slots.compareAndSet(slot, current, change));
+
+        if (!waiting.isEmpty()) {
+            for (Thread thread : waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    // A sequence of 0 reads from the oldest change still kept.
+    ProductChanges since(long sequence, int limit) {
+        long last = lastClaimed.get();
+        long oldest = Math.max(first, last - slots.length() + 1);
+        boolean missed = false;
+        long next = sequence + 1;
+
+        if (sequence == 0) {
+            next = oldest;
+        } else if (next < oldest || sequence > last) {
+            missed = true;
+            next = oldest;
+        }
+
+        List<ProductChange> changes = new ArrayList<>();
+        while (next <= last && changes.size() < limit) {
+            ProductChange change = slots.get((int) (next & mask));
+            if (change == null || change.sequence() < next) {
+                break;
+            }
+            if (change.sequence() > next) {
+                missed = true;
+                next = Math.max(next + 1, lastClaimed.get() - slots.length() + 1);
+                continue;
+            }
+            changes.add(change);
+            next++;
+        }
+
+        return new ProductChanges(changes, next - 1, missed);
+    }
+
+    boolean awaitChangesAfter(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiting.add(current);
+        try {
+            while (lastClaimed.get() <= sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiting.remove(current);
+        }
+    }
+}
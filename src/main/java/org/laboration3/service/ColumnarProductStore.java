@@ -0,0 +1,612 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Keeps the catalog in one primitive array per field, indexed by row in insertion order, and names as UTF-8 in an
+// off-heap buffer. Products are only built when they are read. Queries scan the columns they filter on, which
+// costs more per call than the indexed store but needs a fraction of its heap.
+class ColumnarProductStore implements ProductStore {
+    private static final ProductType[] TYPES = ProductType.values();
+    private static final byte NO_TYPE = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_NAME = -1;
+    private static final int NO_ROW = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Live names are kept below half of the largest buffer, so that a compacted buffer always has room for the names
+    // of the writes checkStorable lets through.
+    private static final long MAX_LIVE_NAME_BYTES = Integer.MAX_VALUE / 2;
+
+    private static final Comparator<Product> BY_NAME = Comparator.comparing(Product::name)
+            .thenComparingInt(Product::id);
+    private static final Comparator<Product> BY_CREATED = Comparator.comparing(Product::created)
+            .thenComparingInt(Product::id);
+    private static final Comparator<Product> BY_CREATED_NEWEST_FIRST = Comparator.comparing(Product::created)
+            .reversed()
+            .thenComparingInt(Product::id);
+
+    private final ProductCounters counters = new ProductCounters();
+    private final ProductNameIndex<NameEntry> names = new ProductNameIndex<>(this::nameAt);
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Held for reading by name searches, which read the name buffer through the entries of the name index, and for
+    // writing by compactNames, which moves the entries to the compacted buffer.
+    private final StampedLock nameIndexLock = new StampedLock();
+    private final StampedLock[] rowLocks = new StampedLock[64];
+    private final StampedLock idIndexLock = new StampedLock();
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private volatile int size;
+    private volatile IdIndex idIndex = new IdIndex(INITIAL_CAPACITY * 2);
+    private volatile ByteBuffer nameBytes = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 16);
+    private int nameBytesEnd;
+    private volatile long liveNameBytes;
+
+    // Reads its name from the name buffer. Renaming the row replaces the entry, so its name stays the same while it
+    // is in the name index, and compactNames moves the reference along with the name.
+    private final class NameEntry implements ProductNameIndex.Entry {
+        private final int row;
+        private int reference;
+
+        private NameEntry(int row, int reference) {
+            this.row = row;
+            this.reference = reference;
+        }
+
+        @Override
+        public int position() {
+            return row;
+        }
+
+        @Override
+        public String name() {
+            return ProductNameIndex.normalize(ColumnarProductStore.name(nameBytes, reference));
+        }
+    }
+
+    private static final class Columns {
+        private final int[] ids;
+        private final byte[] types;
+        private final byte[] ratings;
+        private final int[] created;
+        private final int[] modified;
+        private final int[] names;
+
+        private Columns(int capacity) {
+            this(new int[capacity], new byte[capacity], new byte[capacity],
+                    new int[capacity], new int[capacity], new int[capacity]);
+        }
+
+        private Columns(int[] ids, byte[] types, byte[] ratings, int[] created, int[] modified, int[] names) {
+            this.ids = ids;
+            this.types = types;
+            this.ratings = ratings;
+            this.created = created;
+            this.modified = modified;
+            this.names = names;
+        }
+
+        private int capacity() {
+            return ids.length;
+        }
+
+        private Columns copy(int capacity) {
+            return new Columns(
+                    Arrays.copyOf(ids, capacity),
+                    Arrays.copyOf(types, capacity),
+                    Arrays.copyOf(ratings, capacity),
+                    Arrays.copyOf(created, capacity),
+                    Arrays.copyOf(modified, capacity),
+                    Arrays.copyOf(names, capacity));
+        }
+    }
+
+    // Open addressing from id to row without boxing, a free slot holds NO_ROW. It is never more than half full, so
+    // a lookup always reaches a free slot and ends even when it reads a table that is being written to.
+    private static final class IdIndex {
+        private final int[] ids;
+        private final int[] rows;
+        private int count;
+
+        private IdIndex(int capacity) {
+            ids = new int[capacity];
+            rows = new int[capacity];
+            Arrays.fill(rows, NO_ROW);
+        }
+
+        private int find(int id) {
+            int mask = ids.length - 1;
+            for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+                int row = rows[slot];
+                if (row == NO_ROW || ids[slot] == id) {
+                    return row;
+                }
+            }
+        }
+
+        private void put(int id, int row) {
+            int mask = ids.length - 1;
+            int slot = hash(id) & mask;
+            while (rows[slot] != NO_ROW) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            rows[slot] = row;
+            count++;
+        }
+
+        private boolean isFull() {
+            return (count + 1) * 2 > ids.length;
+        }
+
+        private IdIndex grow() {
+            IdIndex grown = new IdIndex(ids.length * 2);
+            for (int slot = 0; slot < ids.length; slot++) {
+                if (rows[slot] != NO_ROW) {
+                    grown.put(ids[slot], rows[slot]);
+                }
+            }
+            return grown;
+        }
+
+        private static int hash(int id) {
+            int hash = id * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    ColumnarProductStore() {
+        for (int i = 0; i < rowLocks.length; i++) {
+            rowLocks[i] = new StampedLock();
+        }
+    }
+
+    @Override
+    public void checkStorable(Product product) {
+        if (product.rating() < Byte.MIN_VALUE || product.rating() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid rating value: " + product.rating()
+                    + ". Rating must be between " + Byte.MIN_VALUE + " and " + Byte.MAX_VALUE);
+        }
+        ProductStore.super.checkStorable(product);
+        // A UTF-8 name takes at most three bytes per char.
+        if (product.name() != null
+                && liveNameBytes + Integer.BYTES + 3L * product.name().length() > MAX_LIVE_NAME_BYTES) {
+            throw new IllegalArgumentException("No room left for product names");
+        }
+    }
+
+    @Override
+    public Product get(int id) {
+        int row = rowOf(id);
+        return row == NO_ROW ? null : read(row);
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return rowOf(id) != NO_ROW;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean insert(Product product) {
+        checkStorable(product);
+
+        appendLock.lock();
+        try {
+            if (rowOf(product.id()) != NO_ROW) {
+                return false;
+            }
+
+            int row = size;
+            if (row == columns.capacity()) {
+                growColumns();
+            }
+            int nameReference = nameReference(product.name());
+            write(row, product, nameReference);
+
+            long stamp = idIndexLock.writeLock();
+            try {
+                if (idIndex.isFull()) {
+                    idIndex = idIndex.grow();
+                }
+                idIndex.put(product.id(), row);
+            } finally {
+                idIndexLock.unlockWrite(stamp);
+            }
+
+            size = row + 1;
+            counters.add(product);
+            names.add(new NameEntry(row, nameReference));
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public Product replace(Product updatedProduct) {
+        checkStorable(updatedProduct);
+
+        int row = rowOf(updatedProduct.id());
+        Product oldProduct = read(row);
+
+        // Under the append lock, so that the names are not compacted between taking the reference and storing it.
+        appendLock.lock();
+        try {
+            int oldReference = columns.names[row];
+            if (Objects.equals(oldProduct.name(), updatedProduct.name())) {
+                write(row, updatedProduct, oldReference);
+            } else {
+                names.remove(new NameEntry(row, oldReference));
+                int released = nameLength(oldReference);
+                int nameReference = nameReference(updatedProduct.name());
+                write(row, updatedProduct, nameReference);
+                liveNameBytes -= released;
+                names.add(new NameEntry(row, nameReference));
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        counters.remove(oldProduct);
+        counters.add(updatedProduct);
+        return oldProduct;
+    }
+
+    @Override
+    public Stream<Product> products() {
+        return IntStream.range(0, size).mapToObj(this::read);
+    }
+
+    @Override
+    public Stream<Product> productsStoredSoFar() {
+        return products();
+    }
+
+    @Override
+    public long scanBound() {
+        return size;
+    }
+
+    @Override
+    public Stream<Product> productsBetween(long from, long to) {
+        return IntStream.range(Math.toIntExact(from), Math.toIntExact(to)).mapToObj(this::read);
+    }
+
+    @Override
+    public Stream<Product> productsAfter(int id) {
+        return IntStream.range(rowOf(id) + 1, size).mapToObj(this::read);
+    }
+
+    @Override
+    public List<Product> byTypeSortedByName(ProductType type) {
+        byte ordinal = (byte) type.ordinal();
+        Columns scanned = columns;
+        List<Product> matches = new ArrayList<>();
+
+        for (int row = 0, rows = Math.min(size, scanned.capacity()); row < rows; row++) {
+            if (scanned.types[row] == ordinal) {
+                Product product = read(row);
+                if (product.type() == type) {
+                    matches.add(product);
+                }
+            }
+        }
+
+        matches.sort(BY_NAME);
+        return Collections.unmodifiableList(matches);
+    }
+
+    @Override
+    public long countByType(ProductType type) {
+        return counters.countByType(type);
+    }
+
+    @Override
+    public List<ProductType> typesWithProducts() {
+        return counters.typesWithProducts();
+    }
+
+    @Override
+    public Map<Character, Long> countByFirstLetter() {
+        return counters.countByFirstLetter();
+    }
+
+    @Override
+    public NavigableMap<Integer, Long> countByRatingCreatedBetween(LocalDate after, LocalDate before) {
+        return counters.countByRatingCreatedBetween(after, before);
+    }
+
+    @Override
+    public Map<ProductType, NavigableMap<Integer, Long>> countByTypeAndRating() {
+        return counters.countByTypeAndRating();
+    }
+
+    @Override
+    public NavigableMap<LocalDate, Long> countByCreatedDay(LocalDate first, LocalDate last) {
+        return counters.countByCreatedDay(first, last);
+    }
+
+    @Override
+    public LocalDate newestCreatedDayWithAtLeast(ProductType type, long count) {
+        return counters.newestCreatedDayWithAtLeast(type, count);
+    }
+
+    @Override
+    public List<Product> searchByName(String query, boolean prefixOnly, int limit) {
+        List<Integer> rows;
+        long stamp = nameIndexLock.readLock();
+        try {
+            rows = names.search(query, prefixOnly, limit);
+        } finally {
+            nameIndexLock.unlockRead(stamp);
+        }
+        return rows.stream()
+                .map(this::read)
+                .toList();
+    }
+
+    // Called under the name index lock, which keeps the name buffer from being replaced.
+    private String nameAt(int row) {
+        StampedLock lock = rowLock(row);
+        long stamp = lock.tryOptimisticRead();
+        int reference = columns.names[row];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                reference = columns.names[row];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return name(nameBytes, reference);
+    }
+
+    @Override
+    public Stream<Product> createdAfter(LocalDate date) {
+        int after = clampedEpochDay(date);
+        Columns scanned = columns;
+        List<Product> matches = new ArrayList<>();
+
+        for (int row = 0, rows = Math.min(size, scanned.capacity()); row < rows; row++) {
+            if (scanned.created[row] > after) {
+                Product product = read(row);
+                if (product.created() != null && product.created().isAfter(date)) {
+                    matches.add(product);
+                }
+            }
+        }
+
+        matches.sort(BY_CREATED);
+        return matches.stream();
+    }
+
+    @Override
+    public Stream<Product> withRatingCreatedBetweenNewestFirst(int rating, LocalDate from, LocalDate to) {
+        if (rating < Byte.MIN_VALUE || rating > Byte.MAX_VALUE) {
+            return Stream.empty();
+        }
+
+        int first = clampedEpochDay(from);
+        int last = clampedEpochDay(to);
+        Columns scanned = columns;
+        List<Product> matches = new ArrayList<>();
+
+        for (int row = 0, rows = Math.min(size, scanned.capacity()); row < rows; row++) {
+            int created = scanned.created[row];
+            if (scanned.ratings[row] == rating && created >= first && created <= last) {
+                Product product = read(row);
+                if (product.rating() == rating && product.created() != null
+                        && !product.created().isBefore(from) && !product.created().isAfter(to)) {
+                    matches.add(product);
+                }
+            }
+        }
+
+        matches.sort(BY_CREATED_NEWEST_FIRST);
+        return matches.stream();
+    }
+
+    // The scans above read the columns without locking, every candidate is read again consistently and checked once
+    // more, since a row can be rewritten between the two reads. The name buffer is read after the name reference, so
+    // it holds the name unless the names were compacted meanwhile, which the row lock tells.
+    private Product read(int row) {
+        StampedLock lock = rowLock(row);
+        long stamp = lock.tryOptimisticRead();
+        Columns current = columns;
+        int id = current.ids[row];
+        byte type = current.types[row];
+        byte rating = current.ratings[row];
+        int created = current.created[row];
+        int modified = current.modified[row];
+        int name = current.names[row];
+        ByteBuffer buffer = nameBytes;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = columns;
+                id = current.ids[row];
+                type = current.types[row];
+                rating = current.ratings[row];
+                created = current.created[row];
+                modified = current.modified[row];
+                name = current.names[row];
+                buffer = nameBytes;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return new Product(
+                id,
+                name(buffer, name),
+                type == NO_TYPE ? null : TYPES[type],
+                rating,
+                date(created),
+                date(modified)
+        );
+    }
+
+    private void write(int row, Product product, int nameReference) {
+        StampedLock lock = rowLock(row);
+        long stamp = lock.writeLock();
+        try {
+            Columns current = columns;
+            current.ids[row] = product.id();
+            current.types[row] = product.type() == null ? NO_TYPE : (byte) product.type().ordinal();
+            current.ratings[row] = (byte) product.rating();
+            current.created[row] = epochDay(product.created());
+            current.modified[row] = epochDay(product.modified());
+            current.names[row] = nameReference;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int rowOf(int id) {
+        long stamp = idIndexLock.tryOptimisticRead();
+        int row = idIndex.find(id);
+        if (!idIndexLock.validate(stamp)) {
+            stamp = idIndexLock.readLock();
+            try {
+                row = idIndex.find(id);
+            } finally {
+                idIndexLock.unlockRead(stamp);
+            }
+        }
+        return row;
+    }
+
+    // Must be called under the append lock. Holding every row lock keeps in place modifications from being lost
+    // while the columns are copied.
+    private void growColumns() {
+        long[] stamps = new long[rowLocks.length];
+        for (int i = 0; i < rowLocks.length; i++) {
+            stamps[i] = rowLocks[i].writeLock();
+        }
+        try {
+            columns = columns.copy(columns.capacity() * 2);
+        } finally {
+            for (int i = rowLocks.length - 1; i >= 0; i--) {
+                rowLocks[i].unlockWrite(stamps[i]);
+            }
+        }
+    }
+
+    // Must be called under the append lock. Names are appended to the buffer. A renamed product leaves its old name
+    // behind until the buffer is full, the live names are then compacted into a new buffer, twice as large when more
+    // than half of the old one is live. A buffer is never written to below its end, so a reader that paired a
+    // reference with its buffer can read the name from it even after the buffer was replaced.
+    private int nameReference(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + bytes.length;
+        if ((long) nameBytesEnd + length > nameBytes.capacity()) {
+            long capacity = nameBytes.capacity();
+            if (liveNameBytes * 2 > capacity) {
+                capacity *= 2;
+            }
+            capacity = Math.min(Integer.MAX_VALUE, Math.max(capacity, liveNameBytes + length));
+            if (liveNameBytes + length > capacity) {
+                throw new IllegalStateException("No room left for product names");
+            }
+            compactNames((int) capacity);
+        }
+
+        ByteBuffer buffer = nameBytes;
+        buffer.putInt(nameBytesEnd, bytes.length);
+        buffer.put(nameBytesEnd + Integer.BYTES, bytes);
+
+        int reference = nameBytesEnd;
+        nameBytesEnd += length;
+        liveNameBytes += length;
+        return reference;
+    }
+
+    // Must be called under the append lock, the bytes the name takes in the buffer.
+    private int nameLength(int reference) {
+        return reference == NO_NAME ? 0 : Integer.BYTES + nameBytes.getInt(reference);
+    }
+
+    // Must be called under the append lock. Holding every row lock keeps readers from pairing a reference from
+    // before the compaction with the compacted buffer, the name index lock does the same for name searches.
+    private void compactNames(int capacity) {
+        ByteBuffer compacted = ByteBuffer.allocateDirect(capacity);
+        long nameIndexStamp = nameIndexLock.writeLock();
+        long[] stamps = new long[rowLocks.length];
+        for (int i = 0; i < rowLocks.length; i++) {
+            stamps[i] = rowLocks[i].writeLock();
+        }
+        try {
+            Columns current = columns;
+            ByteBuffer buffer = nameBytes;
+            int end = 0;
+            for (int row = 0; row < size; row++) {
+                int reference = current.names[row];
+                if (reference != NO_NAME) {
+                    int length = Integer.BYTES + buffer.getInt(reference);
+                    compacted.put(end, buffer, reference, length);
+                    current.names[row] = end;
+                    end += length;
+                }
+            }
+            for (NameEntry entry : names.entries()) {
+                entry.reference = current.names[entry.row];
+            }
+            nameBytes = compacted;
+            nameBytesEnd = end;
+        } finally {
+            for (int i = rowLocks.length - 1; i >= 0; i--) {
+                rowLocks[i].unlockWrite(stamps[i]);
+            }
+            nameIndexLock.unlockWrite(nameIndexStamp);
+        }
+    }
+
+    int nameBytesCapacity() {
+        return nameBytes.capacity();
+    }
+
+    private static String name(ByteBuffer buffer, int reference) {
+        if (reference == NO_NAME) {
+            return null;
+        }
+
+        byte[] bytes = new byte[buffer.getInt(reference)];
+        buffer.get(reference + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private StampedLock rowLock(int row) {
+        return rowLocks[row & (rowLocks.length - 1)];
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    // Stored dates always fit an int, so a bound outside of it selects the same rows as the nearest int.
+    private static int clampedEpochDay(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -0,0 +1,179 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+// Keeps every product as an object, reachable through concurrent maps and the secondary indexes.
+class IndexedProductStore implements ProductStore {
+    private final Map<Integer, ProductSlot> productsById = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, ProductSlot> productsInInsertionOrder = new ConcurrentSkipListMap<>();
+    private final AtomicLong insertionSequence = new AtomicLong();
+    private final ProductIndexes indexes = new ProductIndexes();
+    private final ProductCounters counters = new ProductCounters();
+    private final ProductNameIndex<ProductNameIndex.NamedEntry> names = new ProductNameIndex<>(this::nameAt);
+
+    // Both maps share the slot, so replacing its product is visible through either of them at once.
+    private static final class ProductSlot {
+        private final long sequence;
+        private final AtomicReference<Product> product;
+
+        private ProductSlot(long sequence, Product product) {
+            this.sequence = sequence;
+            this.product = new AtomicReference<>(product);
+        }
+
+        private Product product() {
+            return product.get();
+        }
+
+        private int position() {
+            return Math.toIntExact(sequence - 1);
+        }
+    }
+
+    @Override
+    public Product get(int id) {
+        ProductSlot slot = productsById.get(id);
+        return slot == null ? null : slot.product();
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return productsById.containsKey(id);
+    }
+
+    @Override
+    public int size() {
+        return productsById.size();
+    }
+
+    @Override
+    public boolean insert(Product product) {
+        ProductSlot slot = new ProductSlot(insertionSequence.incrementAndGet(), product);
+        if (productsById.putIfAbsent(product.id(), slot) != null) {
+            return false;
+        }
+        productsInInsertionOrder.put(slot.sequence, slot);
+        indexes.add(product);
+        counters.add(product);
+        names.add(ProductNameIndex.entry(slot.position(), product.name()));
+        return true;
+    }
+
+    @Override
+    public Product replace(Product updatedProduct) {
+        ProductSlot slot = productsById.get(updatedProduct.id());
+        Product oldProduct = slot.product.getAndSet(updatedProduct);
+        indexes.replace(oldProduct, updatedProduct);
+        counters.add(updatedProduct);
+        counters.remove(oldProduct);
+        if (!Objects.equals(oldProduct.name(), updatedProduct.name())) {
+            names.remove(ProductNameIndex.entry(slot.position(), oldProduct.name()));
+            names.add(ProductNameIndex.entry(slot.position(), updatedProduct.name()));
+        }
+        return oldProduct;
+    }
+
+    @Override
+    public Stream<Product> products() {
+        return productsInInsertionOrder.values().stream()
+                .map(ProductSlot::product);
+    }
+
+    @Override
+    public Stream<Product> productsStoredSoFar() {
+        return productsInInsertionOrder.headMap(insertionSequence.get(), true).values().stream()
+                .map(ProductSlot::product);
+    }
+
+    // Positions are insertion sequences less one, a position left by an insert that lost its id to another holds nothing.
+    @Override
+    public long scanBound() {
+        return insertionSequence.get();
+    }
+
+    @Override
+    public Stream<Product> productsBetween(long from, long to) {
+        return productsInInsertionOrder.subMap(from + 1, true, to + 1, false).values().stream()
+                .map(ProductSlot::product);
+    }
+
+    @Override
+    public Stream<Product> productsAfter(int id) {
+        return productsInInsertionOrder.tailMap(productsById.get(id).sequence, false).values().stream()
+                .map(ProductSlot::product);
+    }
+
+    @Override
+    public List<Product> byTypeSortedByName(ProductType type) {
+        return List.copyOf(indexes.byType(type));
+    }
+
+    @Override
+    public long countByType(ProductType type) {
+        return counters.countByType(type);
+    }
+
+    @Override
+    public List<ProductType> typesWithProducts() {
+        return counters.typesWithProducts();
+    }
+
+    @Override
+    public Map<Character, Long> countByFirstLetter() {
+        return counters.countByFirstLetter();
+    }
+
+    @Override
+    public NavigableMap<Integer, Long> countByRatingCreatedBetween(LocalDate after, LocalDate before) {
+        return counters.countByRatingCreatedBetween(after, before);
+    }
+
+    @Override
+    public Map<ProductType, NavigableMap<Integer, Long>> countByTypeAndRating() {
+        return counters.countByTypeAndRating();
+    }
+
+    @Override
+    public NavigableMap<LocalDate, Long> countByCreatedDay(LocalDate first, LocalDate last) {
+        return counters.countByCreatedDay(first, last);
+    }
+
+    @Override
+    public LocalDate newestCreatedDayWithAtLeast(ProductType type, long count) {
+        return counters.newestCreatedDayWithAtLeast(type, count);
+    }
+
+    @Override
+    public List<Product> searchByName(String query, boolean prefixOnly, int limit) {
+        return names.search(query, prefixOnly, limit).stream()
+                .map(position -> productsInInsertionOrder.get(position + 1L).product())
+                .toList();
+    }
+
+    private String nameAt(int position) {
+        ProductSlot slot = productsInInsertionOrder.get(position + 1L);
+        return slot == null ? null : slot.product().name();
+    }
+
+    @Override
+    public Stream<Product> createdAfter(LocalDate date) {
+        return indexes.createdAfter(date);
+    }
+
+    @Override
+    public Stream<Product> withRatingCreatedBetweenNewestFirst(int rating, LocalDate from, LocalDate to) {
+        return indexes.withRatingCreatedBetweenNewestFirst(rating, from, to);
+    }
+}
@@ -0,0 +1,121 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+// Filters the whole catalog, on a pool of its own once the catalog holds at least threshold products. The positions
+// stored when the scan starts are cut into chunks that the pool's threads steal from each other, and the matches of
+// the chunks are joined in position order, so the result is the one a sequential scan of the same products returns.
+// The pool is only started by the first parallel scan, a closed scan filters on the calling thread.
+class ParallelScan implements AutoCloseable {
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final ProductStore store;
+    private final int threshold;
+    private final int parallelism;
+    private final Lock poolLock = new ReentrantLock();
+    private ForkJoinPool pool;
+    private boolean closed;
+
+    ParallelScan(ProductStore store, int threshold, int parallelism) {
+        this.store = store;
+        this.threshold = threshold;
+        this.parallelism = parallelism;
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("warehouse-scan-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    boolean parallel() {
+        return parallelism > 1 && store.size() >= threshold;
+    }
+
+    List<Product> filter(Predicate<Product> predicate) {
+        long bound = store.scanBound();
+        ForkJoinPool pool = parallel() && bound > CHUNK_SIZE ? pool() : null;
+        if (pool == null) {
+            return store.productsBetween(0, bound).filter(predicate).toList();
+        }
+
+        List<List<Product>> matchesPerChunk = new ArrayList<>(Collections.nCopies(
+                Math.toIntExact((bound + CHUNK_SIZE - 1) / CHUNK_SIZE), List.of()));
+        pool.invoke(new Chunks(predicate, bound, matchesPerChunk, 0, matchesPerChunk.size()));
+
+        List<Product> matches = new ArrayList<>(matchesPerChunk.stream().mapToInt(List::size).sum());
+        matchesPerChunk.forEach(matches::addAll);
+        return Collections.unmodifiableList(matches);
+    }
+
+    private ForkJoinPool pool() {
+        poolLock.lock();
+        try {
+            if (pool == null && !closed) {
+                pool = new ForkJoinPool(parallelism, ParallelScan::newThread, null, false);
+            }
+            return pool;
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        poolLock.lock();
+        try {
+            closed = true;
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    // Each chunk writes its matches to its own slot, so the slots need no further synchronization than the join. The
+    // tasks only live for one scan and are never serialized.
+    private final class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Predicate<Product> predicate;
+        private final long bound;
+        private final transient List<List<Product>> matchesPerChunk;
+        private final int first;
+        private final int last;
+
+        private Chunks(Predicate<Product> predicate, long bound, List<List<Product>> matchesPerChunk, int first,
+                       int last) {
+            this.predicate = predicate;
+            this.bound = bound;
+            this.matchesPerChunk = matchesPerChunk;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                long from = (long) first * CHUNK_SIZE;
+                matchesPerChunk.set(first,
+                        store.productsBetween(from, Math.min(from + CHUNK_SIZE, bound)).filter(predicate).toList());
+                return;
+            }
+
+            int middle = (first + last) >>> 1;
+            invokeAll(new Chunks(predicate, bound, matchesPerChunk, first, middle),
+                    new Chunks(predicate, bound, matchesPerChunk, middle, last));
+        }
+    }
+}
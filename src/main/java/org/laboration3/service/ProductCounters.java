@@ -0,0 +1,165 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Shared by both stores, callers must hold the write lock of the product's id like for the indexes. Created dates are
+// counted per epoch day, products without a type or created date are left out of the counts that need them.
+class ProductCounters {
+    private final Map<ProductType, LongAdder> countByType = new EnumMap<>(ProductType.class);
+    private final Map<Character, LongAdder> countByFirstLetter = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableMap<Long, LongAdder>> countByRatingAndCreatedDay = new ConcurrentHashMap<>();
+    private final Map<ProductType, Map<Integer, LongAdder>> countByTypeAndRating = new EnumMap<>(ProductType.class);
+    private final Map<ProductType, NavigableMap<Long, LongAdder>> countByTypeAndCreatedDay =
+            new EnumMap<>(ProductType.class);
+
+    ProductCounters() {
+        for (ProductType type : ProductType.values()) {
+            countByType.put(type, new LongAdder());
+            countByTypeAndRating.put(type, new ConcurrentHashMap<>());
+            countByTypeAndCreatedDay.put(type, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    void add(Product product) {
+        if (product.type() != null) {
+            countByType.get(product.type()).increment();
+            countByTypeAndRating.get(product.type()).computeIfAbsent(product.rating(), rating -> new LongAdder())
+                    .increment();
+        }
+        countByFirstLetter.computeIfAbsent(firstLetter(product), letter -> new LongAdder()).increment();
+        if (product.created() != null) {
+            long day = product.created().toEpochDay();
+            countByRatingAndCreatedDay.computeIfAbsent(product.rating(), rating -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(day, created -> new LongAdder())
+                    .increment();
+            if (product.type() != null) {
+                countByTypeAndCreatedDay.get(product.type()).computeIfAbsent(day, created -> new LongAdder())
+                        .increment();
+            }
+        }
+    }
+
+    void remove(Product product) {
+        if (product.type() != null) {
+            countByType.get(product.type()).decrement();
+            countByTypeAndRating.get(product.type()).get(product.rating()).decrement();
+        }
+        countByFirstLetter.get(firstLetter(product)).decrement();
+        if (product.created() != null) {
+            long day = product.created().toEpochDay();
+            countByRatingAndCreatedDay.get(product.rating()).get(day).decrement();
+            if (product.type() != null) {
+                countByTypeAndCreatedDay.get(product.type()).get(day).decrement();
+            }
+        }
+    }
+
+    long countByType(ProductType type) {
+        LongAdder count = countByType.get(type);
+        return count == null ? 0 : count.sum();
+    }
+
+    List<ProductType> typesWithProducts() {
+        return countByType.entrySet().stream()
+                .filter(entry -> entry.getValue().sum() > 0)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    Map<Character, Long> countByFirstLetter() {
+        Map<Character, Long> counts = new HashMap<>();
+        countByFirstLetter.forEach((letter, count) -> {
+            long sum = count.sum();
+            if (sum > 0) {
+                counts.put(letter, sum);
+            }
+        });
+        return counts;
+    }
+
+    // Either date may be null for no bound.
+    NavigableMap<Integer, Long> countByRatingCreatedBetween(LocalDate after, LocalDate before) {
+        long from = after == null ? Long.MIN_VALUE : after.toEpochDay();
+        long to = before == null ? Long.MAX_VALUE : before.toEpochDay();
+        NavigableMap<Integer, Long> counts = new TreeMap<>();
+        if (from >= to) {
+            return counts;
+        }
+
+        countByRatingAndCreatedDay.forEach((rating, countByDay) -> {
+            long sum = 0;
+            for (LongAdder count : countByDay.subMap(from, false, to, false).values()) {
+                sum += count.sum();
+            }
+            if (sum > 0) {
+                counts.put(rating, sum);
+            }
+        });
+        return counts;
+    }
+
+    // Every type, with the ratings that have products.
+    Map<ProductType, NavigableMap<Integer, Long>> countByTypeAndRating() {
+        Map<ProductType, NavigableMap<Integer, Long>> counts = new EnumMap<>(ProductType.class);
+        countByTypeAndRating.forEach((type, countByRating) -> {
+            NavigableMap<Integer, Long> typeCounts = new TreeMap<>();
+            countByRating.forEach((rating, count) -> {
+                long sum = count.sum();
+                if (sum > 0) {
+                    typeCounts.put(rating, sum);
+                }
+            });
+            counts.put(type, typeCounts);
+        });
+        return counts;
+    }
+
+    // Days from first to last, both included, on which products were created.
+    NavigableMap<LocalDate, Long> countByCreatedDay(LocalDate first, LocalDate last) {
+        NavigableMap<Long, Long> countByDay = new TreeMap<>();
+        for (NavigableMap<Long, LongAdder> countByDayForRating : countByRatingAndCreatedDay.values()) {
+            countByDayForRating.subMap(first.toEpochDay(), true, last.toEpochDay(), true)
+                    .forEach((day, count) -> countByDay.merge(day, count.sum(), Long::sum));
+        }
+
+        NavigableMap<LocalDate, Long> counts = new TreeMap<>();
+        countByDay.forEach((day, count) -> {
+            if (count > 0) {
+                counts.put(LocalDate.ofEpochDay(day), count);
+            }
+        });
+        return counts;
+    }
+
+    // The latest day such that at least count products of the type were created on or after it, null when the type
+    // has fewer than count products with a created date.
+    LocalDate newestCreatedDayWithAtLeast(ProductType type, long count) {
+        long seen = 0;
+        for (Map.Entry<Long, LongAdder> day : countByTypeAndCreatedDay.get(type).descendingMap().entrySet()) {
+            seen += day.getValue().sum();
+            if (seen >= count) {
+                return LocalDate.ofEpochDay(day.getKey());
+            }
+        }
+        return null;
+    }
+
+    // The first char of the name upper-cased in the default locale, so "ßword" counts under 'S'. Upper-casing only the
+    // first code point gives the same char without copying the whole name, and ASCII other than 'i', which Turkish
+    // locales upper-case to a dotted capital, needs no copy at all.
+    private static Character firstLetter(Product product) {
+        String name = product.name();
+        char first = name.charAt(0);
+        if (first < 128 && first != 'i') {
+            return Character.toUpperCase(first);
+        }
+        return name.substring(0, Character.charCount(name.codePointAt(0))).toUpperCase().charAt(0);
+    }
+}
@@ -0,0 +1,207 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.entities.ProductVersion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The values modifications replaced. Each modification leaves a version holding only the fields it changed, linked
+// from the newest to the oldest version of the product, so a product as of an instant is its current values with
+// every later version undone. The versions of all products also sit in a ring in the order they were recorded. Once
+// the ring holds capacity versions, or its oldest version is older than the retention, that version is cut off its
+// product's chain and the history is complete only from the moment it was recorded on. It is kept in memory, so it
+// starts over at every startup.
+class ProductHistory {
+    private static final int NAME = 1;
+    private static final int TYPE = 2;
+    private static final int RATING = 4;
+    private static final int MODIFIED = 8;
+    private static final long MAX_SECONDS = Long.MAX_VALUE / 1_000_000 - 1;
+
+    private static final class Version {
+        private final int id;
+        private final long recordedAt;
+        private final byte replaced;
+        private final int rating;
+        private final String name;
+        private final ProductType type;
+        private final LocalDate modified;
+        // Set to null when the older version is cut off, newer is only used under the lock.
+        private volatile Version older;
+        private Version newer;
+
+        private Version(long recordedAt, int replaced, Product oldProduct, Version older) {
+            this.id = oldProduct.id();
+            this.recordedAt = recordedAt;
+            this.replaced = (byte) replaced;
+            this.rating = (replaced & RATING) == 0 ? 0 : oldProduct.rating();
+            this.name = (replaced & NAME) == 0 ? null : oldProduct.name();
+            this.type = (replaced & TYPE) == 0 ? null : oldProduct.type();
+            this.modified = (replaced & MODIFIED) == 0 ? null : oldProduct.modified();
+            this.older = older;
+        }
+
+        private Product undo(Product product) {
+            return new Product(
+                    product.id(),
+                    (replaced & NAME) == 0 ? product.name() : name,
+                    (replaced & TYPE) == 0 ? product.type() : type,
+                    (replaced & RATING) == 0 ? product.rating() : rating,
+                    product.created(),
+                    (replaced & MODIFIED) == 0 ? product.modified() : modified
+            );
+        }
+    }
+
+    private final Map<Integer, Version> newestById = new ConcurrentHashMap<>();
+    private final Version[] ring;
+    private final long retention;
+    private final Lock lock = new ReentrantLock();
+    private long recorded;
+    private long cut;
+    private long lastRecordedAt;
+    private volatile long completeSince;
+
+    // A retention of zero keeps versions until the ring is full.
+    ProductHistory(int capacity, Duration retention) {
+        ring = new Version[Math.max(0, capacity)];
+        this.retention = TimeUnit.NANOSECONDS.toMicros(retention.toNanos());
+        completeSince = micros(Instant.now());
+        lastRecordedAt = completeSince;
+    }
+
+    // Called under the write lock of the product before the new values are stored, so that a reader who already
+    // sees the new values also finds the version that undoes them.
+    void record(Product oldProduct, Product newProduct) {
+        int replaced = (Objects.equals(oldProduct.name(), newProduct.name()) ? 0 : NAME)
+                | (oldProduct.type() == newProduct.type() ? 0 : TYPE)
+                | (oldProduct.rating() == newProduct.rating() ? 0 : RATING)
+                | (Objects.equals(oldProduct.modified(), newProduct.modified()) ? 0 : MODIFIED);
+        if (replaced == 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            long now = Math.max(micros(Instant.now()), lastRecordedAt);
+            lastRecordedAt = now;
+            if (ring.length == 0) {
+                completeSince = now;
+                return;
+            }
+
+            while (recorded > cut && (recorded - cut == ring.length
+                    || retention > 0 && ring[(int) (cut % ring.length)].recordedAt < now - retention)) {
+                cutOldest();
+            }
+
+            Version newest = newestById.get(oldProduct.id());
+            Version version = new Version(now, replaced, oldProduct, newest);
+            if (newest != null) {
+                newest.newer = version;
+            }
+            newestById.put(oldProduct.id(), version);
+            ring[(int) (recorded++ % ring.length)] = version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The oldest version in the ring is also the oldest of its product. completeSince moves before the version is
+    // unlinked, so a reader who missed the version sees that the history no longer reaches back far enough.
+    private void cutOldest() {
+        int slot = (int) (cut++ % ring.length);
+        Version oldest = ring[slot];
+        ring[slot] = null;
+        completeSince = oldest.recordedAt;
+
+        Version newer = oldest.newer;
+        if (newer == null) {
+            newestById.remove(oldest.id, oldest);
+        } else {
+            newer.older = null;
+            oldest.newer = null;
+        }
+    }
+
+    // The product as it was at the instant, null when it was created after the instant's day in the local time zone,
+    // like the created and modified dates are set. Callers check checkComplete for the instant after reading all the
+    // products they need.
+    Product asOf(Product current, Instant instant) {
+        if (current.created() != null
+                && current.created().isAfter(LocalDate.ofInstant(instant, ZoneId.systemDefault()))) {
+            return null;
+        }
+
+        long at = micros(instant);
+        Product product = current;
+        for (Version version = newestById.get(current.id()); version != null && version.recordedAt > at;
+             version = version.older) {
+            product = version.undo(product);
+        }
+        return product;
+    }
+
+    void checkComplete(Instant instant) {
+        if (micros(instant) < completeSince) {
+            throw new IllegalArgumentException("Product history is only kept since " + keptSince());
+        }
+    }
+
+    Instant keptSince() {
+        return instant(completeSince);
+    }
+
+    // Newest first, the current values of the product included. Callers must hold the write lock of the product.
+    List<ProductVersion> versions(Product current) {
+        List<ProductVersion> versions = new ArrayList<>();
+        Product product = current;
+        Instant until = null;
+        for (Version version = newestById.get(current.id()); version != null; version = version.older) {
+            Instant recordedAt = instant(version.recordedAt);
+            versions.add(new ProductVersion(product, recordedAt, until));
+            product = version.undo(product);
+            until = recordedAt;
+        }
+        versions.add(new ProductVersion(product, null, until));
+        return versions;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return (int) (recorded - cut);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Microseconds since the epoch, the resolution of Instant.now() on most platforms. Instants that do not fit are
+    // clamped, they lie before or after any version.
+    private static long micros(Instant instant) {
+        long seconds = instant.getEpochSecond();
+        if (seconds > MAX_SECONDS) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds < -MAX_SECONDS) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1_000_000 + instant.getNano() / 1000;
+    }
+
+    private static Instant instant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000L);
+    }
+}
@@ -0,0 +1,111 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+// Callers must hold the write lock of the product's id, the indexes rely on add and replace never racing for
+// one id. Every index maps its key to the current product, so a product whose key stays the same is swapped in place.
+class ProductIndexes {
+    private static final Comparator<NameKey> BY_NAME = Comparator.comparing(NameKey::name)
+            .thenComparingInt(NameKey::id);
+
+    private record NameKey(String name, int id) {
+        private static NameKey of(Product product) {
+            return new NameKey(product.name(), product.id());
+        }
+    }
+
+    private final Map<ProductType, NavigableMap<NameKey, Product>> byType = new EnumMap<>(ProductType.class);
+    private final NavigableMap<LocalDate, NavigableMap<Integer, Product>> byCreated = new ConcurrentSkipListMap<>();
+    private final Map<Integer, NavigableMap<LocalDate, NavigableMap<Integer, Product>>> byRatingAndCreated =
+            new ConcurrentHashMap<>();
+
+    ProductIndexes() {
+        for (ProductType type : ProductType.values()) {
+            byType.put(type, new ConcurrentSkipListMap<>(BY_NAME));
+        }
+    }
+
+    void add(Product product) {
+        if (product.type() != null) {
+            byType.get(product.type()).put(NameKey.of(product), product);
+        }
+
+        if (product.created() != null) {
+            createdBucket(byCreated, product.created()).put(product.id(), product);
+            createdBucket(byCreatedForRating(product.rating()), product.created()).put(product.id(), product);
+        }
+    }
+
+    // Puts the updated product in before taking the old one out, so a reader sees the id in every index it stays in.
+    void replace(Product oldProduct, Product updatedProduct) {
+        if (updatedProduct.type() != null) {
+            byType.get(updatedProduct.type()).put(NameKey.of(updatedProduct), updatedProduct);
+        }
+        if (oldProduct.type() != null && (oldProduct.type() != updatedProduct.type()
+                || !Objects.equals(oldProduct.name(), updatedProduct.name()))) {
+            byType.get(oldProduct.type()).remove(NameKey.of(oldProduct));
+        }
+
+        if (updatedProduct.created() != null) {
+            createdBucket(byCreated, updatedProduct.created()).put(updatedProduct.id(), updatedProduct);
+            createdBucket(byCreatedForRating(updatedProduct.rating()), updatedProduct.created())
+                    .put(updatedProduct.id(), updatedProduct);
+        }
+        if (oldProduct.created() != null) {
+            boolean sameCreated = oldProduct.created().equals(updatedProduct.created());
+            if (!sameCreated) {
+                removeFromBucket(byCreated, oldProduct);
+            }
+            if (!sameCreated || oldProduct.rating() != updatedProduct.rating()) {
+                removeFromBucket(byRatingAndCreated.get(oldProduct.rating()), oldProduct);
+            }
+        }
+    }
+
+    Collection<Product> byType(ProductType type) {
+        return byType.get(type).values();
+    }
+
+    Stream<Product> createdAfter(LocalDate date) {
+        return byCreated.tailMap(date, false).values().stream()
+                .flatMap(bucket -> bucket.values().stream());
+    }
+
+    Stream<Product> withRatingCreatedBetweenNewestFirst(int rating, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, NavigableMap<Integer, Product>> byCreatedForRating = byRatingAndCreated.get(rating);
+        if (byCreatedForRating == null) {
+            return Stream.empty();
+        }
+
+        return byCreatedForRating.subMap(from, true, to, true).descendingMap().values().stream()
+                .flatMap(bucket -> bucket.values().stream());
+    }
+
+    private NavigableMap<LocalDate, NavigableMap<Integer, Product>> byCreatedForRating(int rating) {
+        return byRatingAndCreated.computeIfAbsent(rating, key -> new ConcurrentSkipListMap<>());
+    }
+
+    // Emptied buckets are kept, removing them could race with another id being added to the same date.
+    private static NavigableMap<Integer, Product> createdBucket(
+            NavigableMap<LocalDate, NavigableMap<Integer, Product>> index, LocalDate created) {
+        return index.computeIfAbsent(created, date -> new ConcurrentSkipListMap<>());
+    }
+
+    private static void removeFromBucket(NavigableMap<LocalDate, NavigableMap<Integer, Product>> index,
+                                         Product product) {
+        if (index == null) {
+            return;
+        }
+        NavigableMap<Integer, Product> bucket = index.get(product.created());
+        if (bucket != null) {
+            bucket.remove(product.id());
+        }
+    }
+}
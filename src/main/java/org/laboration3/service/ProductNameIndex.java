@@ -0,0 +1,275 @@
+package org.laboration3.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+// Case-insensitive name search, shared by both stores and keyed by the positions of the products in the store, see
+// ProductStore.productsBetween. Entries are kept sorted by name for prefix queries, a store decides where an entry
+// reads its name from, so that the columnar store does not need to keep its names on the heap. Every trigram of a
+// name padded at its end lists the positions of the names containing it. A substring query verifies the positions
+// that all of its trigrams list, a shorter query those of the trigrams starting with it. Callers must hold the write
+// lock of the product's id like for the counters. That does not keep products with other ids from writing the same
+// posting, so every posting has a lock of its own.
+class ProductNameIndex<E extends ProductNameIndex.Entry> {
+    private static final Comparator<Entry> BY_NAME = Comparator.comparing(Entry::name).thenComparingInt(Entry::position);
+    private static final int GRAM = 3;
+    private static final String PADDING = "\0".repeat(GRAM - 1);
+
+    // The name must stay the same for as long as the entry is in the index.
+    interface Entry {
+        int position();
+
+        String name();
+    }
+
+    record NamedEntry(int position, String name) implements Entry {}
+
+    private record Match(String name, int position) implements Entry {}
+
+    private final NavigableSet<Entry> byName = new ConcurrentSkipListSet<>(BY_NAME);
+    private final NavigableMap<Long, Posting> byTrigram = new ConcurrentSkipListMap<>();
+    private final IntFunction<String> nameAt;
+
+    // nameAt reads the current name at a position, null when there is none.
+    ProductNameIndex(IntFunction<String> nameAt) {
+        this.nameAt = nameAt;
+    }
+
+    static NamedEntry entry(int position, String name) {
+        return new NamedEntry(position, normalize(name));
+    }
+
+    void add(E entry) {
+        byName.add(entry);
+        for (long trigram : trigrams(entry.name() + PADDING)) {
+            byTrigram.computeIfAbsent(trigram, key -> new Posting()).add(entry.position());
+        }
+    }
+
+    // Takes an entry equal to the one added. Emptied postings are kept, removing them could race with another
+    // position being added with the same trigram.
+    void remove(Entry entry) {
+        byName.remove(entry);
+        for (long trigram : trigrams(entry.name() + PADDING)) {
+            Posting posting = byTrigram.get(trigram);
+            if (posting != null) {
+                posting.remove(entry.position());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    Iterable<E> entries() {
+        return (Iterable<E>) (Iterable<? extends Entry>) byName;
+    }
+
+    // Positions of the names starting with the query in name order, followed unless prefixOnly by at most the
+    // remaining limit of other names containing it, also in name order. Which of those are picked when more match is
+    // undefined.
+    List<Integer> search(String query, boolean prefixOnly, int limit) {
+        String text = normalize(query);
+        if (text.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        List<Integer> positions = new ArrayList<>(Math.min(limit, 64));
+
+        Entry from = new NamedEntry(Integer.MIN_VALUE, text);
+        Entry to = new NamedEntry(Integer.MIN_VALUE, text + Character.MAX_VALUE);
+        for (Entry entry : byName.subSet(from, to)) {
+            if (positions.size() == limit) {
+                return positions;
+            }
+            positions.add(entry.position());
+        }
+        if (prefixOnly || positions.size() == limit) {
+            return positions;
+        }
+
+        int wanted = limit - positions.size();
+        List<Match> containing = new ArrayList<>();
+        forEachCandidate(text, position -> {
+            String name = normalize(nameAt.apply(position));
+            if (!name.startsWith(text) && name.contains(text)) {
+                containing.add(new Match(name, position));
+            }
+            return containing.size() < wanted;
+        });
+        containing.sort(BY_NAME);
+        for (Match match : containing) {
+            positions.add(match.position());
+        }
+        return positions;
+    }
+
+    // Until the action returns false. A position is passed at most once.
+    private void forEachCandidate(String text, IntPredicate action) {
+        if (text.length() < GRAM) {
+            long from = gram(text + PADDING, 0);
+            long to = gram(text + String.valueOf(Character.MAX_VALUE).repeat(GRAM - 1), 0);
+            Set<Integer> seen = new HashSet<>();
+            for (Posting posting : byTrigram.subMap(from, true, to, true).values()) {
+                if (!posting.forEach(position -> !seen.add(position) || action.test(position))) {
+                    return;
+                }
+            }
+            return;
+        }
+
+        List<Posting> postings = new ArrayList<>();
+        for (long trigram : trigrams(text)) {
+            Posting posting = byTrigram.get(trigram);
+            if (posting == null || posting.size() == 0) {
+                return;
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Posting::size));
+
+        List<Posting> others = postings.subList(1, postings.size());
+        postings.get(0).forEach(position -> {
+            for (Posting posting : others) {
+                if (!posting.contains(position)) {
+                    return true;
+                }
+            }
+            return action.test(position);
+        });
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            trigrams.add(gram(text, i));
+        }
+        return trigrams;
+    }
+
+    private static long gram(String text, int index) {
+        return (long) text.charAt(index) << 32 | (long) text.charAt(index + 1) << 16 | text.charAt(index + 2);
+    }
+
+    static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // A set of positions in open addressing, written under its own lock. Readers go without it: a removed position is
+    // left behind as a tombstone and positions only move to a new table, so a reader misses at most the positions
+    // written while it reads, which it could not have told from the ones written just after.
+    private static final class Posting {
+        private static final int FREE = -1;
+        private static final int REMOVED = -2;
+
+        private final Lock lock = new ReentrantLock();
+        private volatile int[] table = newTable(4);
+        private volatile int size;
+        private int used;
+
+        int size() {
+            return size;
+        }
+
+        void add(int position) {
+            lock.lock();
+            try {
+                if ((used + 1) * 4 > table.length * 3) {
+                    rehash();
+                }
+
+                int[] current = table;
+                int mask = current.length - 1;
+                int slot = -1;
+                for (int i = slot(position, mask); current[i] != FREE; i = (i + 1) & mask) {
+                    if (current[i] == position) {
+                        return;
+                    }
+                    if (current[i] == REMOVED && slot < 0) {
+                        slot = i;
+                    }
+                }
+                if (slot < 0) {
+                    slot = slot(position, mask);
+                    while (current[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used++;
+                }
+                current[slot] = position;
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(int position) {
+            lock.lock();
+            try {
+                int[] current = table;
+                int mask = current.length - 1;
+                for (int i = slot(position, mask); current[i] != FREE; i = (i + 1) & mask) {
+                    if (current[i] == position) {
+                        current[i] = REMOVED;
+                        size--;
+                        return;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean contains(int position) {
+            int[] current = table;
+            int mask = current.length - 1;
+            for (int i = slot(position, mask); current[i] != FREE; i = (i + 1) & mask) {
+                if (current[i] == position) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Until the action returns false, which is then returned.
+        boolean forEach(IntPredicate action) {
+            for (int position : table) {
+                if (position >= 0 && !action.test(position)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Called under the lock. Drops the tombstones, and doubles the table unless at most half of it was live.
+        private void rehash() {
+            int[] current = table;
+            int[] rehashed = newTable(size * 2 < current.length ? current.length : current.length * 2);
+            int mask = rehashed.length - 1;
+            for (int position : current) {
+                if (position >= 0) {
+                    int i = slot(position, mask);
+                    while (rehashed[i] != FREE) {
+                        i = (i + 1) & mask;
+                    }
+                    rehashed[i] = position;
+                }
+            }
+            used = size;
+            table = rehashed;
+        }
+
+        private static int slot(int position, int mask) {
+            return (position * 0x9E3779B9 >>> 7) & mask;
+        }
+
+        private static int[] newTable(int length) {
+            int[] table = new int[length];
+            Arrays.fill(table, FREE);
+            return table;
+        }
+    }
+}
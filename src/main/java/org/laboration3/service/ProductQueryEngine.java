@@ -0,0 +1,121 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductQuery;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Picks the access path the counters expect to yield the fewest candidates, checks every candidate against the whole
+// query, and keeps only the best limit of them in a bounded heap when the path does not already yield the requested
+// order. A path that does stops reading as soon as the limit is reached. A scan that has to read every product is
+// handed to the parallel scan.
+class ProductQueryEngine {
+    private static final String SCAN = "scan";
+
+    private final ProductStore store;
+    private final ParallelScan scan;
+
+    ProductQueryEngine(ProductStore store, ParallelScan scan) {
+        this.store = store;
+        this.scan = scan;
+    }
+
+    record Plan(String accessPath, long estimatedRows, ProductQuery.Sort order, Supplier<Stream<Product>> candidates) {
+
+        String describe() {
+            String description = accessPath + ", ~" + estimatedRows + " rows";
+            return order == null ? description : description + ", by " + order.name().toLowerCase();
+        }
+    }
+
+    // Ties go to the later path, the indexes yield an order and read fewer columns of the columnar store than a scan.
+    Plan plan(ProductQuery query) {
+        Plan best = new Plan(SCAN, store.size(), null, store::products);
+
+        if (query.type() != null) {
+            long rows = store.countByType(query.type());
+            if (rows <= best.estimatedRows()) {
+                best = new Plan("type " + query.type(), rows, ProductQuery.Sort.NAME,
+                        () -> store.byTypeSortedByName(query.type()).stream());
+            }
+        }
+
+        LocalDate after = query.createdAfter();
+        LocalDate before = query.createdBefore();
+        if (after == null && before == null) {
+            return best;
+        }
+        if (LocalDate.MAX.equals(after) || LocalDate.MIN.equals(before)) {
+            return new Plan("none", 0, query.sort(), Stream::empty);
+        }
+
+        // Read in created order up to the first product not created before, so that they are as many as estimated.
+        NavigableMap<Integer, Long> countByRating = store.countByRatingCreatedBetween(after, before);
+        if (after != null) {
+            long rows = countByRating.values().stream().mapToLong(Long::longValue).sum();
+            if (rows <= best.estimatedRows()) {
+                Supplier<Stream<Product>> candidates = before == null
+                        ? () -> store.createdAfter(after)
+                        : () -> store.createdAfter(after).takeWhile(product -> product.created().isBefore(before));
+                best = new Plan("created after " + after, rows, ProductQuery.Sort.CREATED, candidates);
+            }
+        }
+
+        // Products without a created date are not in the rating index, which is why it needs a bound on the date.
+        if (query.minRating() == null && query.maxRating() == null) {
+            return best;
+        }
+        NavigableMap<Integer, Long> ratings = countByRating.subMap(
+                query.minRating() == null ? Integer.MIN_VALUE : query.minRating(), true,
+                query.maxRating() == null ? Integer.MAX_VALUE : query.maxRating(), true);
+        long rows = ratings.values().stream().mapToLong(Long::longValue).sum();
+        if (rows <= best.estimatedRows()) {
+            LocalDate from = after == null ? LocalDate.MIN : after.plusDays(1);
+            LocalDate to = before == null ? LocalDate.MAX : before.minusDays(1);
+            List<Integer> ratingsToRead = List.copyOf(ratings.keySet());
+            ProductQuery.Sort order = ratingsToRead.size() == 1 ? ProductQuery.Sort.NEWEST : null;
+            best = new Plan("rating " + ratingsToRead, rows, order,
+                    () -> ratingsToRead.stream()
+                            .flatMap(rating -> store.withRatingCreatedBetweenNewestFirst(rating, from, to)));
+        }
+        return best;
+    }
+
+    List<Product> execute(ProductQuery query) {
+        Plan plan = plan(query);
+        ProductQuery.Sort sort = query.sort();
+        Stream<Product> matches = plan.accessPath().equals(SCAN) && (sort != null || query.limit() == 0)
+                ? scan.filter(query::matches).stream()
+                : plan.candidates().get().filter(query::matches);
+
+        if (sort == null || sort == plan.order()) {
+            return (query.limit() > 0 ? matches.limit(query.limit()) : matches).toList();
+        }
+        if (query.limit() == 0) {
+            return matches.sorted(sort.comparator()).toList();
+        }
+        return best(matches, sort.comparator(), query.limit());
+    }
+
+    // The heap's head is the worst product kept so far, so each candidate costs one comparison unless it is better.
+    private static List<Product> best(Stream<Product> matches, Comparator<Product> comparator, int limit) {
+        PriorityQueue<Product> heap = new PriorityQueue<>(Math.min(limit, 1024), comparator.reversed());
+        Iterator<Product> candidates = matches.iterator();
+        while (candidates.hasNext()) {
+            Product candidate = candidates.next();
+            if (heap.size() < limit) {
+                heap.add(candidate);
+            } else if (comparator.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        List<Product> best = new ArrayList<>(heap);
+        best.sort(comparator);
+        return Collections.unmodifiableList(best);
+    }
+}
@@ -0,0 +1,88 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.stream.Stream;
+
+// Holds the catalog for the Warehouse. Locking, validation and the product log stay in the Warehouse, which calls
+// insert and replace under the write lock of the product's id. Reads never lock and may run alongside any write.
+interface ProductStore {
+
+    Product get(int id);
+
+    boolean contains(int id);
+
+    int size();
+
+    // Throws for products the store cannot represent, before anything is written to the log. Snapshots keep dates
+    // as int epoch days, so stores that override this must check them too.
+    default void checkStorable(Product product) {
+        checkEpochDay(product.created());
+        checkEpochDay(product.modified());
+    }
+
+    private static void checkEpochDay(LocalDate date) {
+        if (date != null && (date.toEpochDay() <= Integer.MIN_VALUE || date.toEpochDay() > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Date out of range: " + date);
+        }
+    }
+
+    // Returns false if a product with the same id is already stored.
+    boolean insert(Product product);
+
+    // The product with the same id must exist, returns the product it replaced.
+    Product replace(Product updatedProduct);
+
+    // Insertion order, products added while the stream is read may or may not show up.
+    Stream<Product> products();
+
+    // Insertion order, limited to the products stored when the call was made.
+    Stream<Product> productsStoredSoFar();
+
+    // Every stored product has a position below the bound returned, in insertion order. Products added later get
+    // positions above it, so scanning up to the bound sees the catalog as of the call like productsStoredSoFar.
+    long scanBound();
+
+    // Insertion order, the products at positions from up to but not including to.
+    Stream<Product> productsBetween(long from, long to);
+
+    // Insertion order, starting after the product with the given id which must exist.
+    Stream<Product> productsAfter(int id);
+
+    // Sorted by name and then id.
+    List<Product> byTypeSortedByName(ProductType type);
+
+    long countByType(ProductType type);
+
+    List<ProductType> typesWithProducts();
+
+    Map<Character, Long> countByFirstLetter();
+
+    // Products per rating created strictly between the dates, either may be null for no bound. Ratings without
+    // products are left out.
+    NavigableMap<Integer, Long> countByRatingCreatedBetween(LocalDate after, LocalDate before);
+
+    // Every type, with the number of its products per rating.
+    Map<ProductType, NavigableMap<Integer, Long>> countByTypeAndRating();
+
+    // Products per created date, from first to last with both included. Days without products are left out.
+    NavigableMap<LocalDate, Long> countByCreatedDay(LocalDate first, LocalDate last);
+
+    // The latest created date on or after which at least count products of the type were created, null if there are
+    // fewer of them.
+    LocalDate newestCreatedDayWithAtLeast(ProductType type, long count);
+
+    // Case-insensitive, names starting with the query first and then unless prefixOnly names containing it.
+    List<Product> searchByName(String query, boolean prefixOnly, int limit);
+
+    // Sorted by created date and then id.
+    Stream<Product> createdAfter(LocalDate date);
+
+    // Sorted by created date with the newest first, and then id.
+    Stream<Product> withRatingCreatedBetweenNewestFirst(int rating, LocalDate from, LocalDate to);
+}
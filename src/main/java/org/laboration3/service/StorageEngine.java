@@ -0,0 +1,20 @@
+package org.laboration3.service;
+
+import java.util.function.Supplier;
+
+public enum StorageEngine {
+    // Product objects in concurrent maps with secondary indexes, queries are answered from the indexes.
+    INDEXED(IndexedProductStore::new),
+    // Primitive columns and off-heap names, a much smaller heap at the cost of scanning for most queries.
+    COLUMNAR(ColumnarProductStore::new);
+
+    private final Supplier<ProductStore> factory;
+
+    StorageEngine(Supplier<ProductStore> factory) {
+        this.factory = factory;
+    }
+
+    ProductStore createStore() {
+        return factory.get();
+    }
+}
@@ -1,73 +1,590 @@
 package org.laboration3.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductBatchResult;
+import org.laboration3.entities.ProductChange;
+import org.laboration3.entities.ProductChanges;
+import org.laboration3.entities.ProductQuery;
 import org.laboration3.entities.ProductType;
-
+import org.laboration3.entities.ProductVersion;
+import org.laboration3.exceptions.ProductValidationExceptionMapper;
+import org.laboration3.metrics.MetricRegistry;
+import org.laboration3.persistence.DataDirectory;
+import org.laboration3.persistence.ProductLog;
+import org.laboration3.persistence.ProductSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class Warehouse {
-    private final List<Product> products = Collections.synchronizedList(new ArrayList<>());
+    private static final Logger logger = LoggerFactory.getLogger(Warehouse.class);
+
+    public static final String DATA_DIRECTORY_PROPERTY = "warehouse.data.dir";
+    public static final String COMMIT_INTERVAL_PROPERTY = "warehouse.log.commit-interval-ms";
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "warehouse.snapshot.interval-minutes";
+    public static final String STORAGE_ENGINE_PROPERTY = "warehouse.storage";
+    public static final String CHANGE_FEED_CAPACITY_PROPERTY = "warehouse.changes.capacity";
+    public static final String PARALLEL_SCAN_THRESHOLD_PROPERTY = "warehouse.scan.parallel-threshold";
+    public static final String SCAN_PARALLELISM_PROPERTY = "warehouse.scan.parallelism";
+    public static final String HISTORY_CAPACITY_PROPERTY = "warehouse.history.capacity";
+    public static final String HISTORY_RETENTION_DAYS_PROPERTY = "warehouse.history.retention-days";
+
+    private final ProductStore store;
+    private final ParallelScan scan;
+    private final ProductQueryEngine queries;
+    private final WarehouseMetrics metrics;
+    private final Validator validator;
+    private final CatalogVersions versions = new CatalogVersions();
+    private final ChangeFeed changes = new ChangeFeed(Integer.getInteger(CHANGE_FEED_CAPACITY_PROPERTY, 65536));
+    private final ProductHistory history = new ProductHistory(Integer.getInteger(HISTORY_CAPACITY_PROPERTY, 262_144),
+            Duration.ofDays(Long.getLong(HISTORY_RETENTION_DAYS_PROPERTY, 0)));
+    private final Lock[] writeLocks = new Lock[64];
+    private final Lock checkpointLock = new ReentrantLock();
+    private DataDirectory dataDirectory;
+    private Duration commitInterval;
+    private volatile ProductLog log;
+    private long logGeneration;
+    private ScheduledExecutorService snapshotScheduler;
+
+    public Warehouse() {
+        this(new MetricRegistry());
+    }
+
+    public Warehouse(MetricRegistry registry) {
+        this(registry, DefaultValidator.INSTANCE);
+    }
+
+    @Inject
+    public Warehouse(MetricRegistry registry, Validator validator) {
+        this(StorageEngine.valueOf(System.getProperty(STORAGE_ENGINE_PROPERTY, StorageEngine.INDEXED.name())
+                .toUpperCase()).createStore(), registry, validator);
+    }
+
+    public Warehouse(StorageEngine storageEngine) {
+        this(storageEngine, new MetricRegistry());
+    }
+
+    public Warehouse(StorageEngine storageEngine, MetricRegistry registry) {
+        this(storageEngine.createStore(), registry);
+    }
+
+    Warehouse(ProductStore store, MetricRegistry registry) {
+        this(store, registry, DefaultValidator.INSTANCE);
+    }
+
+    private Warehouse(ProductStore store, MetricRegistry registry, Validator validator) {
+        this.store = store;
+        this.validator = validator;
+        scan = new ParallelScan(store, Integer.getInteger(PARALLEL_SCAN_THRESHOLD_PROPERTY, 100_000),
+                Integer.getInteger(SCAN_PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        queries = new ProductQueryEngine(store, scan);
+        metrics = new WarehouseMetrics(registry, store, history);
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public Warehouse(Path dataDirectory, Duration commitInterval) {
+        this();
+        open(dataDirectory, commitInterval);
+    }
+
+    public Warehouse(StorageEngine storageEngine, Path dataDirectory, Duration commitInterval) {
+        this(storageEngine);
+        open(dataDirectory, commitInterval);
+    }
+
+    Warehouse(ProductStore store, Path dataDirectory, Duration commitInterval) {
+        this(store, new MetricRegistry());
+        open(dataDirectory, commitInterval);
+    }
+
+    // Built on first use, so a Warehouse created by the container with its own Validator never builds one.
+    private static final class DefaultValidator {
+        private static final Validator INSTANCE = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @PostConstruct
+    void init() {
+        String dataDirectory = System.getProperty(DATA_DIRECTORY_PROPERTY);
+        if (dataDirectory == null) {
+            logger.info("No {} set, products are kept in memory only", DATA_DIRECTORY_PROPERTY);
+            return;
+        }
+
+        open(Path.of(dataDirectory), Duration.ofMillis(Long.getLong(COMMIT_INTERVAL_PROPERTY, 2)));
+
+        long snapshotInterval = Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, 60);
+        if (snapshotInterval > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "warehouse-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint();
+                } catch (RuntimeException e) {
+                    logger.error("Could not write product snapshot: {}", e.getMessage());
+                }
+            }, snapshotInterval, snapshotInterval, TimeUnit.MINUTES);
+        }
+    }
+
+    // Loads the latest snapshot and replays the logs written since, keeping the newest log open for appends.
+    private void open(Path directory, Duration interval) {
+        long start = System.nanoTime();
+        try {
+            dataDirectory = new DataDirectory(directory);
+            commitInterval = interval;
+
+            long firstGeneration = 0;
+            if (Files.exists(dataDirectory.snapshotFile())) {
+                firstGeneration = ProductSnapshot.load(dataDirectory.snapshotFile(), store::insert);
+            }
+
+            logGeneration = firstGeneration;
+            for (long generation : dataDirectory.logGenerations()) {
+                if (generation < firstGeneration) {
+                    continue;
+                }
+                if (log != null) {
+                    log.close();
+                }
+                log = ProductLog.open(dataDirectory.logFile(generation), commitInterval);
+                log.replay(this::apply);
+                logGeneration = generation;
+            }
+
+            if (log == null) {
+                log = ProductLog.open(dataDirectory.logFile(logGeneration), commitInterval);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load products from " + directory, e);
+        }
+
+        logger.info("Loaded {} products from {} in {} ms",
+                store.size(), directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Writers are only paused while the log is switched. The snapshot is then written from the live catalog, so it
+    // may already contain changes that are also in the new log, replaying those again leaves the same state.
+    public void checkpoint() {
+        metrics.called(WarehouseMetrics.Call.CHECKPOINT);
+        if (dataDirectory == null) {
+            return;
+        }
+
+        checkpointLock.lock();
+        try {
+            long start = System.nanoTime();
+            ProductLog previousLog = log;
+            long generation = logGeneration + 1;
+
+            lockAll();
+            try {
+                log = ProductLog.open(dataDirectory.logFile(generation), commitInterval);
+                logGeneration = generation;
+            } finally {
+                unlockAll();
+            }
+
+            previousLog.close();
+            ProductSnapshot.write(dataDirectory.snapshotFile(), generation, store.products().iterator());
+            dataDirectory.deleteLogsBefore(generation);
+
+            logger.info("Wrote snapshot of {} products in {} ms",
+                    store.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write product snapshot to " + dataDirectory, e);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void apply(ProductLog.Operation operation, Product product) {
+        if (!store.insert(product)) {
+            store.replace(product);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scan.close();
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        if (log == null) {
+            return;
+        }
+
+        checkpointLock.lock();
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.error("Could not close product log: {}", e.getMessage());
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private record LogPosition(ProductLog log, long position) {}
+
+    // Must be called under the write lock of the product, which keeps the log from being switched meanwhile. Writers
+    // change the store first and append after, so a change the store rejects never reaches the log. A change the log
+    // could not take is reported to the caller and is gone after the next restart.
+    private LogPosition append(ProductLog.Operation operation, Product product) {
+        ProductLog currentLog = log;
+        return currentLog == null ? null : new LogPosition(currentLog, currentLog.append(operation, product));
+    }
+
+    private void awaitDurable(LogPosition position) {
+        if (position != null) {
+            position.log().awaitDurable(position.position());
+        }
+    }
+
+    private Lock writeLockFor(int id) {
+        return writeLocks[Math.floorMod(Integer.hashCode(id), writeLocks.length)];
+    }
+
+    // Tries first so that writers that had to wait show up in the lock contention count.
+    private void lock(Lock lock) {
+        if (!lock.tryLock()) {
+            metrics.lockContended();
+            lock.lock();
+        }
+    }
+
+    private void lockAll() {
+        for (Lock lock : writeLocks) {
+            lock(lock);
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = writeLocks.length - 1; i >= 0; i--) {
+            writeLocks[i].unlock();
+        }
+    }
+
+    // Called under the write lock of the product once the change is in the store, so changes to one product are
+    // published in the order they were made.
+    private void changed(Product oldProduct, Product newProduct) {
+        versions.changed(oldProduct, newProduct);
+        changes.publish(oldProduct == null
+                ? ProductChange.Operation.NEW_PRODUCT
+                : ProductChange.Operation.MODIFY_PRODUCT, newProduct);
+    }
 
     private void checkIfProductsEmpty() {
-        if (products.isEmpty()) {
+        if (store.size() == 0) {
             throw new IllegalStateException("No products available!");
         }
     }
 
     public void newProduct(int id, String name, ProductType type, int rating, LocalDate created, LocalDate modified) {
-        if (getProductById(id).isPresent()) {
-            throw new IllegalArgumentException("Product with id: " + id + " already exists");
+        metrics.called(WarehouseMetrics.Call.NEW_PRODUCT);
+        checkName(name);
+
+        Product product;
+        try {
+            product = new Product(id, name, type, rating, created, modified);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Product creation failed");
+        }
+        store.checkStorable(product);
+
+        Lock lock = writeLockFor(id);
+        LogPosition position;
+        lock(lock);
+        try {
+            if (store.contains(id)) {
+                throw new IllegalArgumentException("Product with id: " + id + " already exists");
+            }
+            store.insert(product);
+            position = append(ProductLog.Operation.NEW_PRODUCT, product);
+            changed(null, product);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    public List<ProductBatchResult> newProducts(Collection<Product> batch) {
+        metrics.called(WarehouseMetrics.Call.NEW_PRODUCTS);
+        List<ProductBatchResult> results = new ArrayList<>(batch.size());
+        List<Product> accepted = new ArrayList<>(batch.size());
+        Set<Integer> idsInBatch = new HashSet<>();
+
+        int index = 0;
+        for (Product product : batch) {
+            String violation = validate(product);
+            if (violation == null && !idsInBatch.add(product.id())) {
+                violation = "Product with id: " + product.id() + " appears more than once in the batch";
+            }
+
+            if (violation == null) {
+                accepted.add(product);
+                results.add(null);
+            } else {
+                results.add(new ProductBatchResult(index, product == null ? 0 : product.id(), false, violation));
+            }
+            index++;
+        }
+
+        LogPosition position = null;
+        lockAll();
+        try {
+            int acceptedIndex = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) != null) {
+                    continue;
+                }
+
+                Product product = accepted.get(acceptedIndex++);
+                if (!store.contains(product.id())) {
+                    try {
+                        store.insert(product);
+                    } catch (RuntimeException e) {
+                        results.set(i, new ProductBatchResult(i, product.id(), false, e.getMessage()));
+                        continue;
+                    }
+                    position = append(ProductLog.Operation.NEW_PRODUCT, product);
+                    changed(null, product);
+                    results.set(i, new ProductBatchResult(i, product.id(), true, "Product added"));
+                } else {
+                    results.set(i, new ProductBatchResult(i, product.id(), false,
+                            "Product with id: " + product.id() + " already exists"));
+                }
+            }
+        } finally {
+            unlockAll();
         }
+        awaitDurable(position);
 
+        return results;
+    }
+
+    private static void checkName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be null or empty");
         }
+    }
+
+    // The checks a single product goes through on its way in: the constraints of Product that ProductResource
+    // validates with @Valid, reported like ProductValidationExceptionMapper does, then the checks of newProduct.
+    private String validate(Product product) {
+        if (product == null) {
+            return "Product cannot be null";
+        }
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            return ProductValidationExceptionMapper.message(violations);
+        }
         try {
-            Product product = new Product(id, name, type, rating, created, modified);
-            products.add(product);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Product creation failed");
+            checkName(product.name());
+            store.checkStorable(product);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
         }
+        return null;
     }
 
+    // The get methods below throw when nothing matches, the find methods return an empty result instead so that a
+    // miss costs no more than a hit.
     public List<Product> getAllProducts() {
+        metrics.called(WarehouseMetrics.Call.GET_ALL_PRODUCTS);
         checkIfProductsEmpty();
 
-        return new ArrayList<>(products);
+        return store.products().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    public List<Product> findAllProducts() {
+        metrics.called(WarehouseMetrics.Call.FIND_ALL_PRODUCTS);
+        return store.products().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Products added after the call are left out, products modified while the stream is read show their new values.
+    // The stream is empty when there are no products.
+    public Stream<Product> streamAllProducts() {
+        metrics.called(WarehouseMetrics.Call.STREAM_ALL_PRODUCTS);
+        return store.productsStoredSoFar();
     }
 
     public List<Product> paginateAllProducts(int pageNumber, int pageSize) {
-        List<Product> allProducts = getAllProducts();
-        int offset = (pageNumber - 1) * pageSize;
+        metrics.called(WarehouseMetrics.Call.PAGINATE_ALL_PRODUCTS);
+        checkIfProductsEmpty();
 
-        if (offset >= allProducts.size()) {
+        if (pageOffset(pageNumber, pageSize) >= store.size()) {
             throw new IllegalArgumentException("Page number out of range.");
         }
 
-        return allProducts.stream()
-                .skip(offset)
+        return page(pageNumber, pageSize);
+    }
+
+    // Empty when the page lies past the last product.
+    public List<Product> findProductsPage(int pageNumber, int pageSize) {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCTS_PAGE);
+        return page(pageNumber, pageSize);
+    }
+
+    private static long pageOffset(int pageNumber, int pageSize) {
+        return (long) (pageNumber - 1) * pageSize;
+    }
+
+    private List<Product> page(int pageNumber, int pageSize) {
+        return store.products()
+                .skip(pageOffset(pageNumber, pageSize))
                 .limit(pageSize)
                 .collect(Collectors.toList());
     }
 
+    public List<Product> getProductsAfter(int afterId, int pageSize) {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCTS_AFTER);
+        return productsAfter(afterId, pageSize)
+                .orElseThrow(() -> new IllegalArgumentException("Product with id: " + afterId + " not found"));
+    }
+
+    // Empty when afterId is neither 0 nor the id of a product, an empty list means there are no products after it.
+    public Optional<List<Product>> findProductsAfter(int afterId, int pageSize) {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCTS_AFTER);
+        return productsAfter(afterId, pageSize);
+    }
+
+    private Optional<List<Product>> productsAfter(int afterId, int pageSize) {
+        Stream<Product> remaining = store.products();
+
+        if (afterId != 0) {
+            if (!store.contains(afterId)) {
+                return Optional.empty();
+            }
+            remaining = store.productsAfter(afterId);
+        }
+
+        return Optional.of(remaining
+                .limit(pageSize)
+                .toList());
+    }
+
+    // Read from the store without scanning it.
+    public int productCount() {
+        return store.size();
+    }
+
+    // Changes whenever any product is added or modified.
+    public long catalogVersion() {
+        return versions.catalog();
+    }
+
+    // Changes whenever a product of the type is added, modified, or modified into or out of the type.
+    public long typeVersion(ProductType type) {
+        return versions.of(type);
+    }
+
+    // Changes after the given sequence, at most limit of them. A sequence of 0 starts at the oldest change still kept.
+    public ProductChanges getChangesSince(long sequence, int limit) {
+        metrics.called(WarehouseMetrics.Call.GET_CHANGES_SINCE);
+        return changes.since(sequence, limit);
+    }
+
+    // Returns false when nothing was published after the sequence before the timeout.
+    public boolean awaitChangesAfter(long sequence, Duration timeout) throws InterruptedException {
+        return changes.awaitChangesAfter(sequence, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
     public Optional<Product> getProductById(int id) {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCT_BY_ID);
+        return Optional.ofNullable(store.get(id));
+    }
+
+    // The product as it was at the instant, empty when there is no product with the id or it was created after the
+    // instant's day. Throws when the history no longer reaches back to the instant, see historyKeptSince.
+    public Optional<Product> getProductByIdAsOf(int id, Instant asOf) {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCT_BY_ID_AS_OF);
+        Product product = store.get(id);
+        Product then = product == null ? null : history.asOf(product, asOf);
+        history.checkComplete(asOf);
+        return Optional.ofNullable(then);
+    }
 
-        return  products.stream()
-                .filter(product -> product.id() == id)
-                .findFirst();
+    // Every product that existed at the instant, with the values it had then, in the order of findAllProducts.
+    public List<Product> findAllProductsAsOf(Instant asOf) {
+        metrics.called(WarehouseMetrics.Call.FIND_ALL_PRODUCTS_AS_OF);
+        List<Product> products = store.products()
+                .map(product -> history.asOf(product, asOf))
+                .filter(Objects::nonNull)
+                .toList();
+        history.checkComplete(asOf);
+        return products;
+    }
+
+    // The versions of the product kept in the history, newest first starting with its current values. Empty when
+    // there is no product with the id.
+    public Optional<List<ProductVersion>> getProductHistory(int id) {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCT_HISTORY);
+        Lock lock = writeLockFor(id);
+        lock(lock);
+        try {
+            Product product = store.get(id);
+            return product == null ? Optional.empty() : Optional.of(history.versions(product));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // As-of reads of earlier instants throw, the versions they need may have been dropped by the retention.
+    public Instant historyKeptSince() {
+        return history.keptSince();
+    }
+
+    // Runs the query on the access path expected to yield the fewest candidates, see explainQuery.
+    public List<Product> findProducts(ProductQuery query) {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCTS);
+        return queries.execute(query);
+    }
+
+    // The access path findProducts would take for the query, with its estimated number of candidates.
+    public String explainQuery(ProductQuery query) {
+        return queries.plan(query).describe();
+    }
+
+    // Case-insensitive, names starting with the query come first in name order. Unless prefixOnly they are followed by
+    // names containing the query anywhere else, at most limit products in all.
+    public List<Product> findProductsByName(String query, boolean prefixOnly, int limit) {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCTS_BY_NAME);
+        return store.searchByName(query, prefixOnly, limit);
     }
 
     public List<Product> getProductsByTypeSortedAtoZ(ProductType type) {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCTS_BY_TYPE_SORTED_A_TO_Z);
         checkIfProductsEmpty();
 
-        List<Product> productsByType = products.stream()
-                .filter(product -> product.type().equals(type))
-                .sorted(Comparator.comparing(Product::name))
-                .toList();
+        List<Product> productsByType = productsByTypeSortedByName(type);
 
         if (productsByType.isEmpty()) {
             throw new IllegalArgumentException("No products with type: " + type + " found!");
@@ -76,6 +593,15 @@ public class Warehouse {
         return productsByType;
     }
 
+    public List<Product> findProductsByTypeSortedAtoZ(ProductType type) {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCTS_BY_TYPE_SORTED_A_TO_Z);
+        return productsByTypeSortedByName(type);
+    }
+
+    private List<Product> productsByTypeSortedByName(ProductType type) {
+        return queries.execute(new ProductQuery(type, null, null, null, null, ProductQuery.Sort.NAME, 0));
+    }
+
     private void checkDate(int year, int month, int day) {
         LocalDate inputDate = LocalDate.of(year, month, day);
         LocalDate now = LocalDate.now();
@@ -86,15 +612,13 @@ public class Warehouse {
     }
 
     public List<Product> getProductsCreatedAfter(int year, int month, int day) {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCTS_CREATED_AFTER);
         checkDate(year, month, day);
         checkIfProductsEmpty();
 
         LocalDate targetDate = LocalDate.of(year, month, day);
 
-        List<Product> productsCreatedAfter = products.stream()
-                .filter(product -> product.created()
-                        .isAfter(targetDate))
-                .toList();
+        List<Product> productsCreatedAfter = productsCreatedAfter(targetDate);
 
         if (productsCreatedAfter.isEmpty()) {
             throw new IllegalArgumentException("No products created after: " + targetDate + " found!");
@@ -103,7 +627,17 @@ public class Warehouse {
         return productsCreatedAfter;
     }
 
+    public List<Product> findProductsCreatedAfter(LocalDate date) {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCTS_CREATED_AFTER);
+        return productsCreatedAfter(date);
+    }
+
+    private List<Product> productsCreatedAfter(LocalDate date) {
+        return queries.execute(new ProductQuery(null, null, null, date, null, ProductQuery.Sort.CREATED, 0));
+    }
+
     public void modifyProduct(int id, String newName, ProductType newType, int newRating) {
+        metrics.called(WarehouseMetrics.Call.MODIFY_PRODUCT);
         if (newName == null || newName.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be null or empty!");
         }
@@ -111,32 +645,40 @@ public class Warehouse {
         if (newRating < 0 || newRating > 10) {
             throw new IllegalArgumentException("Invalid rating value: " + newRating + ". Rating must be between 0 and 10");
         }
-        Optional<Product> oldProduct = getProductById(id);
+        if (!store.contains(id)) {
+            throw new IllegalArgumentException("Product creation failed");
+        }
 
-        if (oldProduct.isPresent()) {
+        Lock lock = writeLockFor(id);
+        LogPosition position;
+        lock(lock);
+        try {
+            Product oldProduct = store.get(id);
             Product updatedProduct = new Product(
-                    oldProduct.get().id(),
+                    oldProduct.id(),
                     newName,
                     newType,
                     newRating,
-                    oldProduct.get().created(),
+                    oldProduct.created(),
                     LocalDate.now()
             );
-
-            products.remove(oldProduct.get());
-            products.add(updatedProduct);
-
-        } else  {
-            throw new IllegalArgumentException("Product creation failed");
+            store.checkStorable(updatedProduct);
+
+            history.record(oldProduct, updatedProduct);
+            store.replace(updatedProduct);
+            position = append(ProductLog.Operation.MODIFY_PRODUCT, updatedProduct);
+            changed(oldProduct, updatedProduct);
+        } finally {
+            lock.unlock();
         }
+        awaitDurable(position);
     }
 
     public List<Product> getAllModifiedProducts() {
+        metrics.called(WarehouseMetrics.Call.GET_ALL_MODIFIED_PRODUCTS);
         checkIfProductsEmpty();
 
-        List<Product> modified = products.stream()
-                .filter(product -> !product.created().equals(product.modified()))
-                .toList();
+        List<Product> modified = modifiedProducts();
 
         if (modified.isEmpty()) {
             throw new IllegalArgumentException("No modified products found!");
@@ -145,21 +687,32 @@ public class Warehouse {
         return modified;
     }
 
+    public List<Product> findAllModifiedProducts() {
+        metrics.called(WarehouseMetrics.Call.FIND_ALL_MODIFIED_PRODUCTS);
+        return modifiedProducts();
+    }
+
+    private List<Product> modifiedProducts() {
+        return scan.filter(product -> !product.created().equals(product.modified()));
+    }
+
     public List<ProductType> getTypesWithAtLeastOneProduct() {
+        metrics.called(WarehouseMetrics.Call.GET_TYPES_WITH_AT_LEAST_ONE_PRODUCT);
         checkIfProductsEmpty();
 
-        return products.stream()
-                .map(Product::type)
-                .distinct()
-                .toList();
+        return store.typesWithProducts();
+    }
+
+    public List<ProductType> findTypesWithAtLeastOneProduct() {
+        metrics.called(WarehouseMetrics.Call.FIND_TYPES_WITH_AT_LEAST_ONE_PRODUCT);
+        return store.typesWithProducts();
     }
 
     public long countProductsInCategory(ProductType type) {
+        metrics.called(WarehouseMetrics.Call.COUNT_PRODUCTS_IN_CATEGORY);
         checkIfProductsEmpty();
 
-        long result = products.stream()
-                .filter(product -> product.type().equals(type))
-                .count();
+        long result = store.countByType(type);
         if (result == 0) {
             throw new IllegalArgumentException("Category with type: " + type + " has no products available!");
         }
@@ -167,27 +720,68 @@ public class Warehouse {
         return result;
     }
 
+    public long countProductsOfType(ProductType type) {
+        metrics.called(WarehouseMetrics.Call.COUNT_PRODUCTS_OF_TYPE);
+        return store.countByType(type);
+    }
+
     public Map<Character, Long> getProductMapWithStartingLettersAndCount() {
+        metrics.called(WarehouseMetrics.Call.GET_PRODUCT_MAP_WITH_STARTING_LETTERS_AND_COUNT);
         checkIfProductsEmpty();
 
-        return products.stream()
-                .collect(Collectors.groupingBy(
-                        product -> product.name().toUpperCase().charAt(0),
-                        Collectors.counting()
-                ));
+        return store.countByFirstLetter();
+    }
+
+    public Map<Character, Long> findProductMapWithStartingLettersAndCount() {
+        metrics.called(WarehouseMetrics.Call.FIND_PRODUCT_MAP_WITH_STARTING_LETTERS_AND_COUNT);
+        return store.countByFirstLetter();
+    }
+
+    // The aggregates below are read from counters kept up to date on every write, they never scan the catalog.
+
+    // Every type with its number of products per rating.
+    public Map<ProductType, NavigableMap<Integer, Long>> findRatingDistributionByType() {
+        metrics.called(WarehouseMetrics.Call.FIND_RATING_DISTRIBUTION_BY_TYPE);
+        return store.countByTypeAndRating();
+    }
+
+    // Days from first to last, both included, with the products created on them. Days without any are left out.
+    public NavigableMap<LocalDate, Long> countProductsCreatedPerDay(LocalDate first, LocalDate last) {
+        metrics.called(WarehouseMetrics.Call.COUNT_PRODUCTS_CREATED_PER_DAY);
+        return store.countByCreatedDay(first, last);
+    }
+
+    public NavigableMap<YearMonth, Long> countProductsCreatedPerMonth(YearMonth first, YearMonth last) {
+        metrics.called(WarehouseMetrics.Call.COUNT_PRODUCTS_CREATED_PER_MONTH);
+        NavigableMap<YearMonth, Long> counts = new TreeMap<>();
+        store.countByCreatedDay(first.atDay(1), last.atEndOfMonth())
+                .forEach((day, count) -> counts.merge(YearMonth.from(day), count, Long::sum));
+        return counts;
+    }
+
+    // The limit newest products of every type, newest first. The created date counters tell from which day on a type
+    // has enough products, so only the products created since then are read.
+    public Map<ProductType, List<Product>> findNewestProductsByType(int limit) {
+        metrics.called(WarehouseMetrics.Call.FIND_NEWEST_PRODUCTS_BY_TYPE);
+        if (limit < 1) {
+            throw new IllegalArgumentException("Invalid limit: " + limit + ". Limit must be at least 1");
+        }
+
+        Map<ProductType, List<Product>> newest = new EnumMap<>(ProductType.class);
+        for (ProductType type : ProductType.values()) {
+            LocalDate since = store.newestCreatedDayWithAtLeast(type, limit);
+            LocalDate after = since == null || since.equals(LocalDate.MIN) ? null : since.minusDays(1);
+            newest.put(type, queries.execute(
+                    new ProductQuery(type, null, null, after, null, ProductQuery.Sort.NEWEST, limit)));
+        }
+        return newest;
     }
 
     public List<Product> getThisMonthsMaxRankedProductsNewestFirst() {
+        metrics.called(WarehouseMetrics.Call.GET_THIS_MONTHS_MAX_RANKED_PRODUCTS_NEWEST_FIRST);
         checkIfProductsEmpty();
 
-        LocalDate now = LocalDate.now();
-
-        List<Product> thisMonthsMaxRatedProducts = products.stream()
-                .filter(product -> product.rating() == 10)
-                .filter(product -> product.created().getMonth() == now.getMonth() &&
-                        product.created().getYear() == now.getYear())
-                .sorted(Comparator.comparing(Product::created).reversed())
-                .toList();
+        List<Product> thisMonthsMaxRatedProducts = thisMonthsMaxRankedProducts();
 
         if (thisMonthsMaxRatedProducts.isEmpty()) {
             throw new IllegalArgumentException("No products with rating 10 created this month!");
@@ -195,5 +789,16 @@ public class Warehouse {
 
         return thisMonthsMaxRatedProducts;
     }
-}
 
+    public List<Product> findThisMonthsMaxRankedProductsNewestFirst() {
+        metrics.called(WarehouseMetrics.Call.FIND_THIS_MONTHS_MAX_RANKED_PRODUCTS_NEWEST_FIRST);
+        return thisMonthsMaxRankedProducts();
+    }
+
+    private List<Product> thisMonthsMaxRankedProducts() {
+        LocalDate now = LocalDate.now();
+
+        return queries.execute(new ProductQuery(null, 10, 10, now.withDayOfMonth(1).minusDays(1),
+                now.withDayOfMonth(now.lengthOfMonth()).plusDays(1), ProductQuery.Sort.NEWEST, 0));
+    }
+}
@@ -0,0 +1,84 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.ProductType;
+import org.laboration3.metrics.Counter;
+import org.laboration3.metrics.MetricRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+class WarehouseMetrics {
+
+    enum Call {
+        NEW_PRODUCT("newProduct"),
+        NEW_PRODUCTS("newProducts"),
+        GET_ALL_PRODUCTS("getAllProducts"),
+        FIND_ALL_PRODUCTS("findAllProducts"),
+        STREAM_ALL_PRODUCTS("streamAllProducts"),
+        PAGINATE_ALL_PRODUCTS("paginateAllProducts"),
+        FIND_PRODUCTS_PAGE("findProductsPage"),
+        GET_PRODUCTS_AFTER("getProductsAfter"),
+        FIND_PRODUCTS_AFTER("findProductsAfter"),
+        GET_PRODUCT_BY_ID("getProductById"),
+        GET_PRODUCT_BY_ID_AS_OF("getProductByIdAsOf"),
+        FIND_ALL_PRODUCTS_AS_OF("findAllProductsAsOf"),
+        GET_PRODUCT_HISTORY("getProductHistory"),
+        FIND_PRODUCTS("findProducts"),
+        FIND_PRODUCTS_BY_NAME("findProductsByName"),
+        GET_PRODUCTS_BY_TYPE_SORTED_A_TO_Z("getProductsByTypeSortedAtoZ"),
+        FIND_PRODUCTS_BY_TYPE_SORTED_A_TO_Z("findProductsByTypeSortedAtoZ"),
+        GET_PRODUCTS_CREATED_AFTER("getProductsCreatedAfter"),
+        FIND_PRODUCTS_CREATED_AFTER("findProductsCreatedAfter"),
+        MODIFY_PRODUCT("modifyProduct"),
+        GET_ALL_MODIFIED_PRODUCTS("getAllModifiedProducts"),
+        FIND_ALL_MODIFIED_PRODUCTS("findAllModifiedProducts"),
+        GET_TYPES_WITH_AT_LEAST_ONE_PRODUCT("getTypesWithAtLeastOneProduct"),
+        FIND_TYPES_WITH_AT_LEAST_ONE_PRODUCT("findTypesWithAtLeastOneProduct"),
+        COUNT_PRODUCTS_IN_CATEGORY("countProductsInCategory"),
+        COUNT_PRODUCTS_OF_TYPE("countProductsOfType"),
+        GET_PRODUCT_MAP_WITH_STARTING_LETTERS_AND_COUNT("getProductMapWithStartingLettersAndCount"),
+        FIND_PRODUCT_MAP_WITH_STARTING_LETTERS_AND_COUNT("findProductMapWithStartingLettersAndCount"),
+        FIND_RATING_DISTRIBUTION_BY_TYPE("findRatingDistributionByType"),
+        COUNT_PRODUCTS_CREATED_PER_DAY("countProductsCreatedPerDay"),
+        COUNT_PRODUCTS_CREATED_PER_MONTH("countProductsCreatedPerMonth"),
+        FIND_NEWEST_PRODUCTS_BY_TYPE("findNewestProductsByType"),
+        GET_THIS_MONTHS_MAX_RANKED_PRODUCTS_NEWEST_FIRST("getThisMonthsMaxRankedProductsNewestFirst"),
+        FIND_THIS_MONTHS_MAX_RANKED_PRODUCTS_NEWEST_FIRST("findThisMonthsMaxRankedProductsNewestFirst"),
+        GET_CHANGES_SINCE("getChangesSince"),
+        CHECKPOINT("checkpoint");
+
+        private final String method;
+
+        Call(String method) {
+            this.method = method;
+        }
+    }
+
+    private final Map<Call, Counter> calls = new EnumMap<>(Call.class);
+    private final Counter lockContention;
+
+    WarehouseMetrics(MetricRegistry registry, ProductStore store, ProductHistory history) {
+        for (Call call : Call.values()) {
+            calls.put(call, registry.counter("warehouse_calls_total", "Calls per Warehouse method",
+                    "method", call.method));
+        }
+        lockContention = registry.counter("warehouse_lock_contention_total",
+                "Write lock acquisitions that had to wait for another writer");
+
+        registry.gauge("warehouse_products", "Products in the catalog", store::size);
+        for (ProductType type : ProductType.values()) {
+            registry.gauge("warehouse_products_by_type", "Products in the catalog per type",
+                    () -> store.countByType(type), "type", type.name());
+        }
+        registry.gauge("warehouse_history_versions", "Earlier product versions kept for history reads",
+                history::size);
+    }
+
+    void called(Call call) {
+        calls.get(call).increment();
+    }
+
+    void lockContended() {
+        lockContention.increment();
+    }
+}
@@ -0,0 +1,99 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.laboration3.entities.ProductChange;
+import org.laboration3.entities.ProductChanges;
+import org.laboration3.entities.ProductType;
+import org.laboration3.service.Warehouse;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ChangeFeedTest {
+
+    private final LocalDate now = LocalDate.now();
+
+    @AfterEach
+    void clearCapacity() {
+        System.clearProperty(Warehouse.CHANGE_FEED_CAPACITY_PROPERTY);
+    }
+
+    @Test
+    void shouldListChangesInOrderAfterSequence() {
+        Warehouse warehouse = new Warehouse();
+
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+        warehouse.newProduct(2, "Chain mail", ProductType.ARMOR, 5, now, now);
+        warehouse.modifyProduct(1, "Broad sword", ProductType.WEAPON, 7);
+
+        ProductChanges all = warehouse.getChangesSince(0, 100);
+        assertThat(all.changesMissed()).isFalse();
+        assertThat(all.changes())
+                .extracting(ProductChange::operation, change -> change.product().name())
+                .containsExactly(
+                        tuple(ProductChange.Operation.NEW_PRODUCT, "Shiv"),
+                        tuple(ProductChange.Operation.NEW_PRODUCT, "Chain mail"),
+                        tuple(ProductChange.Operation.MODIFY_PRODUCT, "Broad sword"));
+
+        long first = all.changes().get(0).sequence();
+        ProductChanges page = warehouse.getChangesSince(first, 1);
+        assertThat(page.changes()).extracting(ProductChange::sequence).containsExactly(first + 1);
+        assertThat(page.lastSequence()).isEqualTo(first + 1);
+
+        ProductChanges none = warehouse.getChangesSince(all.lastSequence(), 100);
+        assertThat(none.changes()).isEmpty();
+        assertThat(none.lastSequence()).isEqualTo(all.lastSequence());
+        assertThat(none.changesMissed()).isFalse();
+    }
+
+    @Test
+    void shouldReportMissedChangesWhenReaderWasLapped() {
+        System.setProperty(Warehouse.CHANGE_FEED_CAPACITY_PROPERTY, "4");
+        Warehouse warehouse = new Warehouse();
+
+        warehouse.newProduct(1, "Product 1", ProductType.WEAPON, 3, now, now);
+        long first = warehouse.getChangesSince(0, 1).lastSequence();
+        for (int id = 2; id <= 10; id++) {
+            warehouse.newProduct(id, "Product " + id, ProductType.WEAPON, 3, now, now);
+        }
+
+        ProductChanges changes = warehouse.getChangesSince(first, 100);
+        assertThat(changes.changesMissed()).isTrue();
+        assertThat(changes.changes())
+                .extracting(change -> change.product().id())
+                .containsExactly(7, 8, 9, 10);
+    }
+
+    @Test
+    void shouldReportMissedChangesForSequenceFromAnotherRun() {
+        Warehouse warehouse = new Warehouse();
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThat(warehouse.getChangesSince(Long.MAX_VALUE, 100).changesMissed()).isTrue();
+    }
+
+    @Test
+    void shouldWakeWaitingReaderWhenChangeIsPublished() throws Exception {
+        Warehouse warehouse = new Warehouse();
+        long last = warehouse.getChangesSince(0, 100).lastSequence();
+
+        CompletableFuture<Boolean> awaited = CompletableFuture.supplyAsync(() -> {
+            try {
+                return warehouse.awaitChangesAfter(last, Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThat(awaited.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(warehouse.awaitChangesAfter(warehouse.getChangesSince(last, 100).lastSequence(),
+                Duration.ofMillis(10))).isFalse();
+    }
+}
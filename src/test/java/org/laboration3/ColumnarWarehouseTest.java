@@ -0,0 +1,159 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductQuery;
+import org.laboration3.entities.ProductType;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarWarehouseTest {
+    Warehouse columnar = new Warehouse(StorageEngine.COLUMNAR);
+    Warehouse indexed = new Warehouse(StorageEngine.INDEXED);
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void shouldAnswerEveryQueryLikeTheIndexedStore() {
+        LocalDate now = LocalDate.now();
+        ProductType[] types = ProductType.values();
+
+        for (Warehouse warehouse : List.of(columnar, indexed)) {
+            for (int id = 1; id <= 5_000; id++) {
+                LocalDate created = now.minusDays(id % 60);
+                warehouse.newProduct(id, (char) ('a' + id % 26) + "xe " + id % 700, types[id % types.length],
+                        id % 10 + 1, created, created);
+            }
+            for (int id = 1; id <= 5_000; id += 7) {
+                warehouse.modifyProduct(id, "Renamed " + id % 300, types[(id + 2) % types.length], id % 11);
+            }
+        }
+
+        assertThat(columnar.getAllProducts()).isEqualTo(indexed.getAllProducts());
+        assertThat(columnar.paginateAllProducts(3, 100)).isEqualTo(indexed.paginateAllProducts(3, 100));
+        assertThat(columnar.getProductsAfter(4_321, 50)).isEqualTo(indexed.getProductsAfter(4_321, 50));
+        assertThat(columnar.getProductById(77)).isEqualTo(indexed.getProductById(77));
+        for (ProductType type : types) {
+            assertThat(columnar.getProductsByTypeSortedAtoZ(type)).isEqualTo(indexed.getProductsByTypeSortedAtoZ(type));
+            assertThat(columnar.countProductsInCategory(type)).isEqualTo(indexed.countProductsInCategory(type));
+        }
+        LocalDate after = now.minusDays(20);
+        assertThat(columnar.getProductsCreatedAfter(after.getYear(), after.getMonthValue(), after.getDayOfMonth()))
+                .isEqualTo(indexed.getProductsCreatedAfter(after.getYear(), after.getMonthValue(), after.getDayOfMonth()));
+        assertThat(columnar.getAllModifiedProducts()).isEqualTo(indexed.getAllModifiedProducts());
+        assertThat(columnar.getTypesWithAtLeastOneProduct()).isEqualTo(indexed.getTypesWithAtLeastOneProduct());
+        assertThat(columnar.getProductMapWithStartingLettersAndCount())
+                .isEqualTo(indexed.getProductMapWithStartingLettersAndCount());
+        assertThat(columnar.getThisMonthsMaxRankedProductsNewestFirst())
+                .isEqualTo(indexed.getThisMonthsMaxRankedProductsNewestFirst());
+        ProductQuery query = new ProductQuery(ProductType.ARMOR, 3, 7, now.minusDays(30), null,
+                ProductQuery.Sort.NEWEST, 40);
+        assertThat(columnar.findProducts(query)).isEqualTo(indexed.findProducts(query));
+        assertThat(columnar.findRatingDistributionByType()).isEqualTo(indexed.findRatingDistributionByType());
+        assertThat(columnar.countProductsCreatedPerDay(now.minusDays(30), now))
+                .isEqualTo(indexed.countProductsCreatedPerDay(now.minusDays(30), now));
+        assertThat(columnar.findNewestProductsByType(7)).isEqualTo(indexed.findNewestProductsByType(7));
+        assertThat(columnar.findProductsByName("renamed 1", false, 1_000))
+                .isEqualTo(indexed.findProductsByName("renamed 1", false, 1_000));
+        assertThat(columnar.findProductsByName("xe 69", false, 1_000))
+                .isEqualTo(indexed.findProductsByName("xe 69", false, 1_000));
+    }
+
+    @Test
+    void shouldKeepNullFieldsAndNonAsciiNames() {
+        columnar.newProduct(1, "Ångström's blåbärssylt", null, 3, null, null);
+
+        assertThat(columnar.getProductById(1))
+                .contains(new Product(1, "Ångström's blåbärssylt", null, 3, null, null));
+    }
+
+    @Test
+    void shouldRejectRatingThatDoesNotFitTheColumn() {
+        LocalDate now = LocalDate.now();
+
+        assertThatThrownBy(() -> columnar.newProduct(1, "Shiv", ProductType.WEAPON, 1_000, now, now))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid rating value: 1000. Rating must be between -128 and 127");
+        assertThatThrownBy(columnar::getAllProducts)
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldNeverReturnHalfWrittenProductWhileColumnsGrow() throws Exception {
+        LocalDate now = LocalDate.now();
+        columnar.newProduct(1, "Shiv", ProductType.WEAPON, 1, now, now);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<?>> tasks = new ArrayList<>();
+        tasks.add(executor.submit(() -> {
+            for (int id = 2; id <= 50_000; id++) {
+                columnar.newProduct(id, "Filler", ProductType.ARMOR, 5, now, now);
+            }
+            running.set(false);
+            return null;
+        }));
+        tasks.add(executor.submit(() -> {
+            for (int round = 0; running.get(); round++) {
+                boolean even = round % 2 == 0;
+                columnar.modifyProduct(1, even ? "Morning star" : "Shiv",
+                        even ? ProductType.ARTIFACT : ProductType.WEAPON, even ? 10 : 1);
+            }
+            return null;
+        }));
+        tasks.add(executor.submit(() -> {
+            while (running.get()) {
+                Product product = columnar.getProductById(1).orElseThrow();
+                if (product.name().equals("Shiv")) {
+                    assertThat(product.type()).isEqualTo(ProductType.WEAPON);
+                    assertThat(product.rating()).isEqualTo(1);
+                } else {
+                    assertThat(product.type()).isEqualTo(ProductType.ARTIFACT);
+                    assertThat(product.rating()).isEqualTo(10);
+                }
+            }
+            return null;
+        }));
+
+        for (Future<?> task : tasks) {
+            task.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(columnar.getAllProducts()).hasSize(50_000);
+    }
+
+    @Test
+    void shouldRestoreColumnarCatalogFromSnapshotAndLog() {
+        LocalDate now = LocalDate.now();
+        Warehouse warehouse = new Warehouse(StorageEngine.COLUMNAR, dataDirectory, Duration.ZERO);
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+        warehouse.checkpoint();
+        warehouse.modifyProduct(1, "Chain mail", ProductType.ARMOR, 4);
+        warehouse.shutdown();
+
+        Warehouse restarted = new Warehouse(StorageEngine.COLUMNAR, dataDirectory, Duration.ZERO);
+
+        assertThat(restarted.getProductById(1)).hasValueSatisfying(product -> {
+            assertThat(product.name()).isEqualTo("Chain mail");
+            assertThat(product.type()).isEqualTo(ProductType.ARMOR);
+        });
+        restarted.shutdown();
+    }
+}
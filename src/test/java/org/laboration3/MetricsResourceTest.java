@@ -0,0 +1,97 @@
+package org.laboration3;
+
+import org.jboss.resteasy.core.SynchronousDispatcher;
+import org.jboss.resteasy.core.SynchronousExecutionContext;
+import org.jboss.resteasy.mock.MockDispatcherFactory;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.jboss.resteasy.spi.Dispatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.laboration3.entities.ProductType;
+import org.laboration3.metrics.Counter;
+import org.laboration3.metrics.Histogram;
+import org.laboration3.metrics.MetricRegistry;
+import org.laboration3.resource.MetricsResource;
+import org.laboration3.resource.ProductResource;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsResourceTest {
+
+    private MetricRegistry metrics;
+    private Warehouse warehouse;
+    private Dispatcher dispatcher;
+
+    @BeforeEach
+    void setup() {
+        metrics = new MetricRegistry();
+        warehouse = new Warehouse(StorageEngine.INDEXED, metrics);
+
+        dispatcher = MockDispatcherFactory.createDispatcher();
+        dispatcher.getRegistry().addSingletonResource(new ProductResource(warehouse, metrics));
+        dispatcher.getRegistry().addSingletonResource(new MetricsResource(metrics));
+    }
+
+    @Test
+    void shouldExposeEndpointWarehouseAndCatalogMetricsInPrometheusFormat() throws URISyntaxException, UnsupportedEncodingException {
+        LocalDate now = LocalDate.now();
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+        warehouse.newProduct(2, "Chain mail", ProductType.ARMOR, 4, now, now);
+
+        invoke(dispatcher, MockHttpRequest.get("/products/1"), new MockHttpResponse());
+        invoke(dispatcher, MockHttpRequest.get("/products/7"), new MockHttpResponse());
+
+        MockHttpResponse response = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/metrics"), response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getOutputHeaders().getFirst("Content-Type").toString()).startsWith("text/plain");
+        assertThat(response.getContentAsString())
+                .contains("# TYPE http_request_duration_seconds histogram\n")
+                .contains("http_request_duration_seconds_count{endpoint=\"getProduct\"} 2\n")
+                .contains("http_request_duration_seconds_bucket{endpoint=\"getProduct\",le=\"+Inf\"} 2\n")
+                .contains("http_request_errors_total{endpoint=\"getProduct\"} 1\n")
+                .contains("warehouse_calls_total{method=\"newProduct\"} 2\n")
+                .contains("warehouse_calls_total{method=\"getProductById\"} 2\n")
+                .contains("warehouse_products 2\n")
+                .contains("warehouse_products_by_type{type=\"WEAPON\"} 1\n")
+                .contains("warehouse_products_by_type{type=\"POTION\"} 0\n")
+                .contains("warehouse_lock_contention_total 0\n");
+    }
+
+    @Test
+    void shouldRecordWithoutAllocating() {
+        Counter counter = metrics.counter("test_total", "Test counter");
+        Histogram histogram = metrics.histogram("test_seconds", "Test histogram");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < 100_000; i++) {
+            counter.increment();
+            histogram.record(i * 1_000L);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            counter.increment();
+            histogram.record(i * 1_000L);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(allocated).isLessThan(1_024);
+    }
+
+    // The mock request does not support suspending by default, which every ProductResource method does.
+    private static void invoke(Dispatcher dispatcher, MockHttpRequest request, MockHttpResponse response) {
+        request.setAsynchronousContext(
+                new SynchronousExecutionContext((SynchronousDispatcher) dispatcher, request, response));
+        dispatcher.invoke(request, response);
+    }
+}
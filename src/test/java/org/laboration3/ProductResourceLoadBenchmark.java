@@ -0,0 +1,269 @@
+package org.laboration3;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.undertow.servlet.api.DeploymentInfo;
+import jakarta.ws.rs.ext.ContextResolver;
+import org.jboss.resteasy.core.ResteasyDeploymentImpl;
+import org.jboss.resteasy.plugins.server.undertow.UndertowJaxrsServer;
+import org.jboss.resteasy.spi.ResteasyDeployment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.laboration3.cache.ResponseCache;
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.exceptions.ProductValidationExceptionMapper;
+import org.laboration3.logging.RequestLog;
+import org.laboration3.metrics.MetricRegistry;
+import org.laboration3.resource.ProductResource;
+import org.laboration3.resource.RequestExecutor;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives the REST layer over real HTTP on localhost with a configurable mix of requests and reports latency
+// percentiles per request kind. Not picked up by the default surefire includes, run with:
+// mvn test -Dtest=ProductResourceLoadBenchmark -Dload.threads=8 -Dload.seconds=30 -Dload.mix=post:10,get:60,category:10,page:20
+// load.request-threads=virtual runs the resource on virtual threads instead of the Undertow worker threads.
+// The comparison of both modes at 10k concurrent connections on Java 21 has not been measured yet, it is run with:
+// mvn test -Dtest=ProductResourceLoadBenchmark -Dload.threads=10000 -Dload.seconds=60 -Dload.request-threads=virtual
+// and the same with load.request-threads=container.
+class ProductResourceLoadBenchmark {
+
+    static {
+        System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", System.getProperty("load.log-level", "warn"));
+    }
+
+    enum Operation {
+        POST,
+        GET,
+        CATEGORY,
+        PAGE
+    }
+
+    private final int threads = Integer.getInteger("load.threads", 8);
+    private final int seconds = Integer.getInteger("load.seconds", 10);
+    private final int warmupSeconds = Integer.getInteger("load.warmup-seconds", 3);
+    private final int products = Integer.getInteger("load.products", 10_000);
+    private final Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix", "post:10,get:60,category:10,page:20"));
+    private final StorageEngine engine = StorageEngine.valueOf(System.getProperty("load.storage", "INDEXED").toUpperCase());
+    private final RequestExecutor.Threads requestThreads =
+            RequestExecutor.Threads.valueOf(System.getProperty("load.request-threads", "CONTAINER").toUpperCase());
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private UndertowJaxrsServer server;
+    private RequestExecutor requestExecutor;
+    private URI baseUri;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Warehouse warehouse = new Warehouse(engine);
+        LocalDate now = LocalDate.now();
+        ProductType[] types = ProductType.values();
+        List<Product> catalog = new ArrayList<>(products);
+        for (int id = 1; id <= products; id++) {
+            catalog.add(new Product(id, "Product " + id, types[id % types.length], id % 10 + 1, now, now));
+        }
+        warehouse.newProducts(catalog);
+        nextId.set(products + 1);
+
+        ResteasyDeployment deployment = new ResteasyDeploymentImpl();
+        deployment.setApplication(new App());
+        MetricRegistry metrics = new MetricRegistry();
+        requestExecutor = new RequestExecutor(requestThreads);
+        deployment.getResources().add(new ProductResource(warehouse, metrics, new RequestLog(metrics),
+                new ResponseCache(metrics), requestExecutor));
+        deployment.getProviderClasses().add(ProductValidationExceptionMapper.class.getName());
+        deployment.getProviders().add(new JavaTimeObjectMapper());
+
+        int port = freePort();
+        server = new UndertowJaxrsServer().setHostname("localhost").setPort(port).start();
+        DeploymentInfo deploymentInfo = server.undertowDeployment(deployment, "/api")
+                .setContextPath("/")
+                .setDeploymentName("load-test")
+                .setClassLoader(ProductResourceLoadBenchmark.class.getClassLoader());
+        server.deploy(deploymentInfo);
+
+        baseUri = URI.create("http://localhost:" + port + "/api/products");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(threads))
+                .build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+        requestExecutor.shutdown();
+    }
+
+    @Test
+    void measureLatencyUnderLoad() throws Exception {
+        run(warmupSeconds);
+        Map<Operation, Recorder> results = run(seconds);
+
+        System.out.printf("%d threads, %d s, %s, %s request threads, %,d products preloaded, mix %s%n",
+                threads, seconds, engine, requestThreads, products, mix);
+        System.out.printf("%-9s %10s %8s %10s %10s %10s %10s%n", "request", "count", "errors", "req/s", "p50 us", "p99 us", "p999 us");
+        Recorder all = new Recorder();
+        for (Map.Entry<Operation, Recorder> result : results.entrySet()) {
+            print(result.getKey().name(), result.getValue());
+            all.addAll(result.getValue());
+        }
+        print("ALL", all);
+
+        assertThat(all.count()).isPositive();
+        assertThat(all.errors).isZero();
+    }
+
+    private void print(String name, Recorder recorder) {
+        System.out.printf("%-9s %,10d %,8d %,10.0f %,10d %,10d %,10d%n", name, recorder.count(), recorder.errors,
+                recorder.count() / (double) seconds, recorder.percentile(0.5), recorder.percentile(0.99),
+                recorder.percentile(0.999));
+    }
+
+    // Each worker keeps its own recorders and they are merged at the end, so recording never contends.
+    private Map<Operation, Recorder> run(int durationSeconds) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<Map<Operation, Recorder>>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(workers.submit(() -> {
+                Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+                while (System.nanoTime() < deadline) {
+                    Operation operation = pick();
+                    HttpRequest request = request(operation);
+                    long start = System.nanoTime();
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    long elapsed = System.nanoTime() - start;
+
+                    Recorder recorder = recorders.computeIfAbsent(operation, key -> new Recorder());
+                    recorder.add(elapsed);
+                    if (response.statusCode() >= 300) {
+                        recorder.errors++;
+                    }
+                }
+                return recorders;
+            }));
+        }
+
+        Map<Operation, Recorder> merged = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, Recorder>> future : futures) {
+            future.get().forEach((operation, recorder) ->
+                    merged.computeIfAbsent(operation, key -> new Recorder()).addAll(recorder));
+        }
+        workers.shutdown();
+        return merged;
+    }
+
+    private Operation pick() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty request mix");
+    }
+
+    private HttpRequest request(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ProductType[] types = ProductType.values();
+
+        return switch (operation) {
+            case POST -> {
+                int id = nextId.getAndIncrement();
+                String json = "{\"id\": " + id + ", \"name\": \"Product " + id + "\", \"type\": \""
+                        + types[id % types.length] + "\", \"rating\": " + (id % 10 + 1) + "}";
+                yield HttpRequest.newBuilder(baseUri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json))
+                        .build();
+            }
+            case GET -> HttpRequest.newBuilder(URI.create(baseUri + "/" + random.nextInt(1, products + 1))).build();
+            case CATEGORY -> HttpRequest.newBuilder(
+                    URI.create(baseUri + "/category/" + types[random.nextInt(types.length)])).build();
+            case PAGE -> HttpRequest.newBuilder(
+                    URI.create(baseUri + "?page=" + random.nextInt(1, products / 50 + 1) + "&size=50")).build();
+        };
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split(":");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // WildFly serializes with JSON-B, the Jackson provider used in tests needs to be told about LocalDate.
+    private static final class JavaTimeObjectMapper implements ContextResolver<ObjectMapper> {
+        private final ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        @Override
+        public ObjectMapper getContext(Class<?> type) {
+            return mapper;
+        }
+    }
+
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void add(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void addAll(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        int count() {
+            return count;
+        }
+
+        long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.laboration3;
 
 import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.core.SynchronousDispatcher;
+import org.jboss.resteasy.core.SynchronousExecutionContext;
 import org.jboss.resteasy.mock.MockDispatcherFactory;
 import org.jboss.resteasy.mock.MockHttpRequest;
 import org.jboss.resteasy.mock.MockHttpResponse;
@@ -10,9 +12,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import org.laboration3.cache.ResponseCache;
 import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductBatchResult;
+import org.laboration3.entities.ProductChange;
+import org.laboration3.entities.ProductChanges;
+import org.laboration3.entities.ProductQuery;
 import org.laboration3.entities.ProductType;
+import org.laboration3.entities.ProductVersion;
+import org.laboration3.logging.RequestLog;
+import org.laboration3.metrics.MetricRegistry;
 import org.laboration3.resource.ProductResource;
+import org.laboration3.resource.RequestExecutor;
 import org.laboration3.service.Warehouse;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -22,7 +33,14 @@ import org.skyscreamer.jsonassert.JSONCompareMode;
 import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.YearMonth;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,8 +77,411 @@ public class ProductResourceTest {
 
         MockHttpResponse response = new MockHttpResponse();
 
-        dispatcher.invoke(request, response);
+        invoke(dispatcher, request, response);
 
         assertEquals(201, response.getStatus());
     }
-}
+
+    @Test
+    void whenListingWithCursorThenShouldReturnPageAndNextLink() throws URISyntaxException {
+        LocalDate now = LocalDate.now();
+        Mockito.when(warehouse.findProductsAfter(0, 3)).thenReturn(Optional.of(List.of(
+                new Product(1, "Necronomicon", ProductType.ARTIFACT, 7, now, now),
+                new Product(2, "Shiv", ProductType.WEAPON, 3, now, now),
+                new Product(3, "Chain mail", ProductType.ARMOR, 5, now, now)
+        )));
+
+        MockHttpRequest request = MockHttpRequest.get("/products?after=0&size=2");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        String link = response.getOutputHeaders().getFirst("Link").toString();
+        assertTrue(link.contains("after=2"));
+        assertTrue(link.contains("rel=\"next\""));
+    }
+
+    @Test
+    void whenListingLastCursorPageThenShouldNotReturnNextLink() throws URISyntaxException {
+        LocalDate now = LocalDate.now();
+        Mockito.when(warehouse.findProductsAfter(2, 3)).thenReturn(Optional.of(List.of(
+                new Product(3, "Chain mail", ProductType.ARMOR, 5, now, now)
+        )));
+
+        MockHttpRequest request = MockHttpRequest.get("/products?after=2&size=2");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getOutputHeaders().getFirst("Link"));
+    }
+
+    @Test
+    void whenListingAfterUnknownCursorThenShouldReturn404NotFound() throws URISyntaxException {
+        Mockito.when(warehouse.findProductsAfter(7, 3)).thenReturn(Optional.empty());
+
+        MockHttpRequest request = MockHttpRequest.get("/products?after=7&size=2");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    void whenListingEmptyCategoryThenShouldReturnEmptyArray() throws URISyntaxException, UnsupportedEncodingException {
+        Mockito.when(warehouse.findProductsByTypeSortedAtoZ(ProductType.ARMOR)).thenReturn(List.of());
+
+        MockHttpRequest request = MockHttpRequest.get("/products/category/armor");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("[]", response.getContentAsString());
+    }
+
+    @Test
+    void whenListingUnknownCategoryThenShouldReturn400BadRequest() throws URISyntaxException, UnsupportedEncodingException {
+        MockHttpRequest request = MockHttpRequest.get("/products/category/spells");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(400, response.getStatus());
+        assertEquals("Invalid product category: spells", response.getContentAsString());
+    }
+
+    @Test
+    void whenRunningOnVirtualThreadsThenShouldAnswerFromThere() throws URISyntaxException {
+        RequestExecutor requestExecutor = new RequestExecutor(RequestExecutor.Threads.VIRTUAL);
+        MetricRegistry metrics = new MetricRegistry();
+        Dispatcher virtualDispatcher = MockDispatcherFactory.createDispatcher();
+        virtualDispatcher.getRegistry().addSingletonResource(new ProductResource(warehouse, metrics,
+                new RequestLog(metrics), new ResponseCache(metrics), requestExecutor));
+
+        Thread testThread = Thread.currentThread();
+        LocalDate now = LocalDate.now();
+        Mockito.when(warehouse.getProductById(1)).thenAnswer(invocation -> {
+            assertNotSame(testThread, Thread.currentThread());
+            return Optional.of(new Product(1, "Shiv", ProductType.WEAPON, 3, now, now));
+        });
+
+        MockHttpRequest request = MockHttpRequest.get("/products/1");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(virtualDispatcher, request, response);
+        requestExecutor.shutdown();
+
+        assertEquals(200, response.getStatus());
+        Mockito.verify(warehouse).getProductById(1);
+    }
+
+    @Test
+    void whenListingChangesThenShouldReturnChangesAfterSequence() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        Mockito.when(warehouse.getChangesSince(41, 1000)).thenReturn(new ProductChanges(List.of(
+                new ProductChange(42, ProductChange.Operation.MODIFY_PRODUCT,
+                        new Product(1, "Shiv", ProductType.WEAPON, 3, date, date))
+        ), 42, false));
+
+        MockHttpRequest request = MockHttpRequest.get("/products/changes?since=41");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("""
+                {"changes": [{"sequence": 42, "operation": "MODIFY_PRODUCT", "product": {"id": 1, "name": "Shiv"}}],
+                 "lastSequence": 42, "changesMissed": false}
+                """, response.getContentAsString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    void whenSearchingByNameThenShouldReturnMatchesUpToLimit() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        Mockito.when(warehouse.findProductsByName("sword", true, 5)).thenReturn(List.of(
+                new Product(3, "Swordfish", ProductType.ARTIFACT, 4, date, date)
+        ));
+
+        MockHttpRequest request = MockHttpRequest.get("/products/search?q=sword&prefix=true&limit=5");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("[{\"id\": 3, \"name\": \"Swordfish\"}]", response.getContentAsString(),
+                JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    void whenQueryingProductsThenShouldPassPredicatesToWarehouse() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        ProductQuery query = new ProductQuery(ProductType.WEAPON, 5, null, LocalDate.of(2024, 7, 1), null,
+                ProductQuery.Sort.NEWEST, 10);
+        Mockito.when(warehouse.findProducts(query)).thenReturn(List.of(
+                new Product(1, "Shiv", ProductType.WEAPON, 7, date, date)
+        ));
+
+        MockHttpResponse response = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get(
+                "/products/query?type=weapon&minRating=5&createdAfter=2024-07-01&sort=newest&limit=10"), response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("[{\"id\": 1, \"rating\": 7}]", response.getContentAsString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    void whenQueryingWithInvalidSortThenShouldReturn400BadRequest() throws URISyntaxException {
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, MockHttpRequest.get("/products/query?sort=price"), response);
+
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    void whenCountingProductsCreatedPerMonthThenShouldReturnCountsByMonth() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        Mockito.when(warehouse.countProductsCreatedPerMonth(YearMonth.of(2024, 6), YearMonth.of(2024, 7)))
+                .thenReturn(new TreeMap<>(Map.of(YearMonth.of(2024, 6), 4L, YearMonth.of(2024, 7), 9L)));
+
+        MockHttpResponse response = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products/stats/created?per=month&from=2024-06&to=2024-07"), response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("{\"2024-06\": 4, \"2024-07\": 9}", response.getContentAsString(),
+                JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void whenCountingProductsCreatedPerWeekThenShouldReturn400BadRequest() throws URISyntaxException {
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, MockHttpRequest.get("/products/stats/created?per=week"), response);
+
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    void whenSearchingWithoutQueryThenShouldReturn400BadRequest() throws URISyntaxException {
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, MockHttpRequest.get("/products/search?q=%20"), response);
+
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    void whenCategoryIsUnchangedThenShouldReturn304NotModified() throws URISyntaxException {
+        Mockito.when(warehouse.typeVersion(ProductType.ARMOR)).thenReturn(42L);
+        Mockito.when(warehouse.findProductsByTypeSortedAtoZ(ProductType.ARMOR)).thenReturn(List.of());
+
+        MockHttpResponse first = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products/category/armor"), first);
+        String etag = first.getOutputHeaders().getFirst("ETag").toString();
+
+        MockHttpResponse second = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products/category/armor").header("If-None-Match", etag), second);
+
+        assertEquals(200, first.getStatus());
+        assertEquals(304, second.getStatus());
+        Mockito.verify(warehouse, Mockito.times(1)).findProductsByTypeSortedAtoZ(ProductType.ARMOR);
+    }
+
+    @Test
+    void whenCatalogHasChangedThenShouldReturnProductsAndNewETag() throws URISyntaxException {
+        Mockito.when(warehouse.catalogVersion()).thenReturn(1L, 2L);
+        Mockito.when(warehouse.streamAllProducts()).thenAnswer(invocation -> Stream.of());
+
+        MockHttpResponse first = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products"), first);
+        String etag = first.getOutputHeaders().getFirst("ETag").toString();
+
+        MockHttpResponse second = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products").header("If-None-Match", etag), second);
+
+        assertEquals(200, second.getStatus());
+        assertNotEquals(etag, second.getOutputHeaders().getFirst("ETag").toString());
+    }
+
+    @Test
+    void whenListingAllProductsThenShouldStreamJsonArray() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        Mockito.when(warehouse.streamAllProducts()).thenReturn(Stream.of(
+                new Product(1, "Necronomicon", ProductType.ARTIFACT, 7, date, date),
+                new Product(2, "Shiv", ProductType.WEAPON, 3, date, date)
+        ));
+
+        MockHttpRequest request = MockHttpRequest.get("/products");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("""
+                [
+                    {"id": 1, "name": "Necronomicon", "type": "ARTIFACT", "rating": 7, "created": "2024-07-31", "modified": "2024-07-31"},
+                    {"id": 2, "name": "Shiv", "type": "WEAPON", "rating": 3, "created": "2024-07-31", "modified": "2024-07-31"}
+                ]
+                """, response.getContentAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void whenListingAllProductsThenShouldCacheOnlyCatalogsThatFitACacheEntry() throws URISyntaxException {
+        Mockito.when(warehouse.catalogVersion()).thenReturn(1L);
+        Mockito.when(warehouse.streamAllProducts()).thenAnswer(invocation -> Stream.of());
+
+        invoke(dispatcher, MockHttpRequest.get("/products"), new MockHttpResponse());
+        invoke(dispatcher, MockHttpRequest.get("/products"), new MockHttpResponse());
+        Mockito.verify(warehouse, Mockito.times(1)).streamAllProducts();
+
+        Mockito.when(warehouse.catalogVersion()).thenReturn(2L);
+        Mockito.when(warehouse.productCount()).thenReturn(Integer.MAX_VALUE);
+
+        invoke(dispatcher, MockHttpRequest.get("/products"), new MockHttpResponse());
+        invoke(dispatcher, MockHttpRequest.get("/products"), new MockHttpResponse());
+        Mockito.verify(warehouse, Mockito.times(3)).streamAllProducts();
+    }
+
+    @Test
+    void whenAcceptingNdjsonThenShouldStreamOneProductPerLine() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        Mockito.when(warehouse.streamAllProducts()).thenReturn(Stream.of(
+                new Product(1, "Necronomicon", ProductType.ARTIFACT, 7, date, date),
+                new Product(2, "Shiv", ProductType.WEAPON, 3, date, date)
+        ));
+
+        MockHttpRequest request = MockHttpRequest.get("/products")
+                .accept("application/x-ndjson");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        JSONAssert.assertEquals("""
+                {"id": 2, "name": "Shiv", "type": "WEAPON", "rating": 3, "created": "2024-07-31", "modified": "2024-07-31"}
+                """, lines[1], JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void whenPostingProductBatchThenShouldReturnPerItemResults() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        String json = """
+    [
+        {"id": 1, "name": "Necronomicon", "type": "ARTIFACT", "rating": 7},
+        {"id": 2, "name": "", "type": "WEAPON", "rating": 3}
+    ]
+    """;
+        Mockito.when(warehouse.newProducts(Mockito.anyList())).thenReturn(List.of(
+                new ProductBatchResult(0, 1, true, "Product added"),
+                new ProductBatchResult(1, 2, false, "Product name cannot be null or empty")
+        ));
+
+        MockHttpRequest request = MockHttpRequest.post("/products/batch")
+                .content(json.getBytes())
+                .contentType(MediaType.APPLICATION_JSON);
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("""
+                [
+                    {"index": 0, "id": 1, "added": true, "message": "Product added"},
+                    {"index": 1, "id": 2, "added": false, "message": "Product name cannot be null or empty"}
+                ]
+                """, response.getContentAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void whenImportingNdjsonThenShouldSkipMalformedLinesAndReportCounts() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        String ndjson = """
+                {"id": 1, "name": "Necronomicon", "type": "ARTIFACT", "rating": 7}
+                {"id": 2, "name": "Shiv", "type": "WEAPON"
+                {"id": 3, "name": "Chain mail", "type": "ARMOR", "rating": 5}
+                {"id": 4, "name": "Excalibur", "type": "LEGENDARY", "rating": 10}
+                """;
+        Mockito.when(warehouse.newProducts(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            assertEquals(List.of(1, 3), products.stream().map(Product::id).toList());
+            return List.of(
+                    new ProductBatchResult(0, 1, true, "Product added"),
+                    new ProductBatchResult(1, 3, false, "Product with id: 3 already exists")
+            );
+        });
+
+        MockHttpRequest request = MockHttpRequest.post("/products/import")
+                .content(ndjson.getBytes())
+                .contentType("application/x-ndjson");
+        MockHttpResponse response = new MockHttpResponse();
+
+        invoke(dispatcher, request, response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("""
+                {"lines": 4, "added": 1, "rejected": 1, "malformed": 2}
+                """, response.getContentAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void whenGettingProductAsOfDateThenShouldReadItAtEndOfThatDay() throws URISyntaxException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        Instant endOfDay = LocalDate.of(2024, 8, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusNanos(1);
+        Mockito.when(warehouse.getProductByIdAsOf(1, endOfDay)).thenReturn(Optional.of(
+                new Product(1, "Iron sword", ProductType.WEAPON, 4, date, date)
+        ));
+
+        MockHttpResponse response = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products/1?asOf=2024-07-31"), response);
+
+        assertEquals(200, response.getStatus());
+        Mockito.verify(warehouse).getProductByIdAsOf(1, endOfDay);
+    }
+
+    @Test
+    void whenListingProductsAsOfInstantBeforeHistoryThenShouldReturn400BadRequest() throws URISyntaxException {
+        Instant asOf = Instant.parse("2024-07-31T12:00:00Z");
+        Mockito.when(warehouse.findAllProductsAsOf(asOf))
+                .thenThrow(new IllegalArgumentException("Product history is only kept since 2024-08-01T00:00:00Z"));
+
+        MockHttpResponse response = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products?asOf=2024-07-31T12:00:00Z"), response);
+
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    void whenGettingProductHistoryThenShouldReturnVersionsNewestFirst() throws URISyntaxException, UnsupportedEncodingException, JSONException {
+        LocalDate created = LocalDate.of(2024, 7, 1);
+        LocalDate modified = LocalDate.of(2024, 7, 31);
+        Instant changed = Instant.parse("2024-07-31T09:30:00Z");
+        Mockito.when(warehouse.getProductHistory(1)).thenReturn(Optional.of(List.of(
+                new ProductVersion(new Product(1, "Steel sword", ProductType.WEAPON, 6, created, modified),
+                        changed, null),
+                new ProductVersion(new Product(1, "Iron sword", ProductType.WEAPON, 4, created, created),
+                        null, changed)
+        )));
+        Mockito.when(warehouse.historyKeptSince()).thenReturn(Instant.parse("2024-07-30T00:00:00Z"));
+
+        MockHttpResponse response = new MockHttpResponse();
+        invoke(dispatcher, MockHttpRequest.get("/products/1/history"), response);
+
+        assertEquals(200, response.getStatus());
+        JSONAssert.assertEquals("""
+                {"keptSince": "2024-07-30T00:00:00Z", "versions": [
+                  {"validFrom": "2024-07-31T09:30:00Z", "validUntil": null, "product": {"name": "Steel sword"}},
+                  {"validFrom": null, "validUntil": "2024-07-31T09:30:00Z", "product": {"name": "Iron sword"}}
+                ]}
+                """, response.getContentAsString(), JSONCompareMode.LENIENT);
+    }
+
+    // The mock request does not support suspending by default, which every ProductResource method does.
+    private static void invoke(Dispatcher dispatcher, MockHttpRequest request, MockHttpResponse response) {
+        request.setAsynchronousContext(
+                new SynchronousExecutionContext((SynchronousDispatcher) dispatcher, request, response));
+        dispatcher.invoke(request, response);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.Test;
+import org.laboration3.logging.RequestLog;
+import org.laboration3.logging.RequestLogger;
+import org.laboration3.metrics.MetricRegistry;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RequestLogTest {
+
+    private final Logger logger = Mockito.mock(Logger.class);
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    RequestLogTest() {
+        when(logger.isInfoEnabled()).thenReturn(true);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        when(logger.isErrorEnabled()).thenReturn(true);
+    }
+
+    @Test
+    void shouldSkipInfoButKeepWarningsForUnsampledRequests() {
+        RequestLogger log = new RequestLog(metrics, 0, 0).endpoint("getProduct", logger).begin();
+
+        log.info("Trying to find product with id: {}", 7);
+        log.warn("Product with id: {} not found", 7);
+
+        verify(logger, never()).info(any(String.class), any(Object[].class));
+        verify(logger).warn("Product with id: {} not found", new Object[]{7});
+    }
+
+    @Test
+    void shouldWriteProgressOfBulkOperationsForUnsampledRequests() {
+        RequestLogger log = new RequestLog(metrics, 0, 0).endpoint("importProducts", logger).begin();
+
+        log.info("Starting product import");
+        log.progress("Imported {} products from {} lines so far", 1000L, 1000L);
+
+        verify(logger, never()).info("Starting product import", new Object[0]);
+        verify(logger).info("Imported {} products from {} lines so far", new Object[]{1000L, 1000L});
+    }
+
+    @Test
+    void shouldUsePerEndpointSampleRate() {
+        System.setProperty("warehouse.request-log.allProducts.sample-rate", "1");
+        try {
+            RequestLog requestLog = new RequestLog(metrics, 0, 0);
+
+            requestLog.endpoint("allProducts", logger).begin().info("Listing all products");
+            requestLog.endpoint("getProduct", logger).begin().info("Trying to find product");
+
+            verify(logger).info("Listing all products", new Object[0]);
+            verifyNoMoreInteractions(ignoreStubs(logger));
+        } finally {
+            System.clearProperty("warehouse.request-log.allProducts.sample-rate");
+        }
+    }
+
+    @Test
+    void shouldWriteQueuedLinesOnWriterThread() {
+        RequestLog requestLog = new RequestLog(metrics, 1, 16);
+        RequestLogger log = requestLog.endpoint("getProduct", logger).begin();
+
+        log.info("Product with id: {} found: {}", 1, "Shiv");
+        requestLog.shutdown();
+
+        verify(logger).info("Product with id: {} found: {}", new Object[]{1, "Shiv"});
+    }
+
+    @Test
+    void shouldDropAndCountLinesWhenQueueIsFull() {
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            return null;
+        }).when(logger).info(any(String.class), any(Object[].class));
+        RequestLog requestLog = new RequestLog(metrics, 1, 1);
+        RequestLogger log = requestLog.endpoint("getProduct", logger).begin();
+
+        for (int i = 0; i < 100; i++) {
+            log.info("Line {}", i);
+        }
+        requestLog.shutdown();
+
+        assertThat(metrics.scrape()).containsPattern("request_log_dropped_total [1-9][0-9]*\n");
+    }
+}
@@ -0,0 +1,56 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.Test;
+import org.laboration3.cache.ResponseCache;
+import org.laboration3.metrics.MetricRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private final ResponseCache cache = new ResponseCache(new MetricRegistry(), 400);
+
+    @Test
+    void shouldServeCachedBodyUntilVersionChanges() {
+        AtomicInteger encoded = new AtomicInteger();
+
+        cache.get("products/category/WEAPON", 1, () -> body(encoded, 10));
+        cache.get("products/category/WEAPON", 1, () -> body(encoded, 10));
+        cache.get("products/category/WEAPON", 2, () -> body(encoded, 10));
+
+        assertThat(encoded).hasValue(2);
+        ResponseCache.Stats stats = cache.stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(2);
+        assertThat(stats.entries()).isEqualTo(1);
+        assertThat(stats.bytes()).isEqualTo(10);
+        assertThat(stats.hitRate()).isEqualTo(1 / 3.0);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesBeyondByteLimit() {
+        AtomicInteger encoded = new AtomicInteger();
+
+        cache.put("a", 1, new byte[100]);
+        cache.put("b", 1, new byte[100]);
+        cache.put("c", 1, new byte[100]);
+        cache.get("a", 1);
+        cache.put("d", 1, new byte[100]);
+        cache.put("e", 1, new byte[100]);
+
+        assertThat(cache.get("a", 1)).isNotNull();
+        assertThat(cache.get("b", 1)).isNull();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+        assertThat(cache.stats().bytes()).isEqualTo(400);
+
+        cache.get("large", 1, () -> body(encoded, 101));
+        assertThat(cache.get("large", 1)).isNull();
+    }
+
+    private static byte[] body(AtomicInteger encoded, int length) {
+        encoded.incrementAndGet();
+        return new byte[length];
+    }
+}
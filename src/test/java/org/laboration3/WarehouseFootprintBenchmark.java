@@ -0,0 +1,70 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.Test;
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.service.StorageEngine;
+import org.laboration3.service.Warehouse;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not picked up by the default surefire includes, run with: mvn test -Dtest=WarehouseFootprintBenchmark -Dbenchmark.products=1000000
+class WarehouseFootprintBenchmark {
+
+    @Test
+    void measureHeapPerStorageEngine() {
+        int products = Integer.getInteger("benchmark.products", 1_000_000);
+
+        for (StorageEngine engine : StorageEngine.values()) {
+            long heapBefore = usedHeap();
+            long directBefore = usedDirectMemory();
+
+            Warehouse warehouse = fill(new Warehouse(engine), products);
+
+            long heap = usedHeap() - heapBefore;
+            long direct = usedDirectMemory() - directBefore;
+            System.out.printf("%s with %,d products: heap %,d MB (%d bytes per product), off-heap %,d MB%n",
+                    engine, products, heap >> 20, heap / products, direct >> 20);
+
+            assertThat(warehouse.getAllProducts()).hasSize(products);
+        }
+    }
+
+    private static Warehouse fill(Warehouse warehouse, int products) {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        ProductType[] types = ProductType.values();
+
+        List<Product> batch = new ArrayList<>(10_000);
+        for (int id = 1; id <= products; id++) {
+            batch.add(new Product(id, "Product " + id, types[id % types.length], id % 10 + 1,
+                    date.plusDays(id % 365), date.plusDays(id % 365)));
+            if (batch.size() == 10_000) {
+                warehouse.newProducts(batch);
+                batch.clear();
+            }
+        }
+        warehouse.newProducts(batch);
+        return warehouse;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirectMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
@@ -0,0 +1,167 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.persistence.DataDirectory;
+import org.laboration3.service.Warehouse;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WarehousePersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    private Warehouse openWarehouse() {
+        return new Warehouse(directory, Duration.ofMillis(1));
+    }
+
+    @Test
+    void shouldKeepProductsAndModificationsAcrossRestart() throws IOException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        Warehouse warehouse = openWarehouse();
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 2, date, date);
+        warehouse.newProduct(2, "Shiv", ProductType.WEAPON, 3, date, date);
+        warehouse.modifyProduct(1, "Chain mail", ProductType.ARMOR, 10);
+        warehouse.shutdown();
+
+        Warehouse restarted = openWarehouse();
+
+        assertThat(restarted.getAllProducts())
+                .extracting(Product::id, Product::name, Product::type, Product::created)
+                .containsExactly(
+                        tuple(1, "Chain mail", ProductType.ARMOR, date),
+                        tuple(2, "Shiv", ProductType.WEAPON, date)
+                );
+        assertThat(restarted.countProductsInCategory(ProductType.WEAPON)).isEqualTo(1);
+        restarted.shutdown();
+    }
+
+    @Test
+    void shouldKeepBatchInsertsAcrossRestart() throws IOException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        Warehouse warehouse = openWarehouse();
+        warehouse.newProducts(List.of(
+                new Product(1, "Morning star", ProductType.WEAPON, 2, date, date),
+                new Product(2, "Shiv", ProductType.WEAPON, 3, date, date)
+        ));
+        warehouse.shutdown();
+
+        Warehouse restarted = openWarehouse();
+
+        assertThat(restarted.getAllProducts()).hasSize(2);
+        restarted.shutdown();
+    }
+
+    @Test
+    void shouldRejectDatesSnapshotsCannotHoldSoCheckpointsKeepWorking() throws IOException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        Warehouse warehouse = openWarehouse();
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, date, date);
+        assertThatThrownBy(() -> warehouse.newProduct(2, "Orb", ProductType.ARTIFACT, 5, LocalDate.MAX, LocalDate.MAX))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Date out of range: " + LocalDate.MAX);
+        warehouse.checkpoint();
+        warehouse.shutdown();
+
+        Warehouse restarted = openWarehouse();
+
+        assertThat(restarted.getAllProducts()).extracting(Product::id).containsExactly(1);
+        restarted.shutdown();
+    }
+
+    @Test
+    void shouldDiscardIncompleteRecordAtEndOfLog() throws IOException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        Warehouse warehouse = openWarehouse();
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 2, date, date);
+        warehouse.newProduct(2, "Shiv", ProductType.WEAPON, 3, date, date);
+        warehouse.shutdown();
+
+        Path log = new DataDirectory(directory).logFile(0);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log) - 3);
+        }
+
+        Warehouse restarted = openWarehouse();
+        restarted.newProduct(3, "Broad sword", ProductType.WEAPON, 4, date, date);
+        restarted.shutdown();
+
+        Warehouse reopened = openWarehouse();
+
+        assertThat(reopened.getAllProducts())
+                .extracting(Product::id)
+                .containsExactly(1, 3);
+        reopened.shutdown();
+    }
+
+    @Test
+    void shouldRestoreFromSnapshotAndLaterLogRecords() throws IOException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        Warehouse warehouse = openWarehouse();
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 2, date, date);
+        warehouse.newProduct(2, "Shiv", ProductType.WEAPON, 3, date, date);
+        warehouse.checkpoint();
+        warehouse.modifyProduct(2, "Shank", ProductType.WEAPON, 4);
+        warehouse.newProduct(3, "Chain mail", ProductType.ARMOR, 5, date, date);
+        warehouse.shutdown();
+
+        DataDirectory dataDirectory = new DataDirectory(directory);
+        assertThat(Files.exists(dataDirectory.snapshotFile())).isTrue();
+        assertThat(dataDirectory.logGenerations()).containsExactly(1L);
+
+        Warehouse restarted = openWarehouse();
+
+        assertThat(restarted.getAllProducts())
+                .extracting(Product::id, Product::name)
+                .containsExactly(
+                        tuple(1, "Morning star"),
+                        tuple(2, "Shank"),
+                        tuple(3, "Chain mail")
+                );
+        assertThat(restarted.getProductsByTypeSortedAtoZ(ProductType.ARMOR)).hasSize(1);
+        restarted.shutdown();
+    }
+
+    @Test
+    void shouldReplayProductsWrittenAfterLogSwitchEvenIfAlsoInSnapshot() throws IOException {
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        Warehouse warehouse = openWarehouse();
+        for (int id = 1; id <= 1_000; id++) {
+            warehouse.newProduct(id, "Product " + id, ProductType.POTION, id % 10 + 1, date, date);
+        }
+        warehouse.checkpoint();
+        warehouse.checkpoint();
+        warehouse.modifyProduct(500, "Elixir", ProductType.POTION, 10);
+        warehouse.shutdown();
+
+        Warehouse restarted = openWarehouse();
+
+        assertThat(restarted.getAllProducts()).hasSize(1_000);
+        assertThat(restarted.getProductById(500))
+                .isPresent()
+                .get()
+                .extracting(Product::name)
+                .isEqualTo("Elixir");
+        restarted.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+package org.laboration3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.laboration3.service.Warehouse;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not picked up by the default surefire includes, run with: mvn test -Dtest=WarehouseStartupBenchmark -Dbenchmark.products=3000000
+class WarehouseStartupBenchmark {
+
+    @TempDir
+    Path logOnly;
+
+    @TempDir
+    Path withSnapshot;
+
+    @Test
+    void measureStartupFromLogAndFromSnapshot() {
+        int products = Integer.getInteger("benchmark.products", 3_000_000);
+
+        fill(logOnly, products, false);
+        fill(withSnapshot, products, true);
+
+        long fromLog = timeStartup(logOnly, products);
+        long fromSnapshot = timeStartup(withSnapshot, products);
+
+        System.out.printf("Startup with %,d products: log replay %,d ms, snapshot %,d ms%n",
+                products, fromLog, fromSnapshot);
+    }
+
+    private void fill(Path directory, int products, boolean checkpoint) {
+        Warehouse warehouse = new Warehouse(directory, Duration.ZERO);
+        LocalDate date = LocalDate.of(2024, 7, 31);
+        ProductType[] types = ProductType.values();
+
+        List<Product> batch = new ArrayList<>(10_000);
+        for (int id = 1; id <= products; id++) {
+            batch.add(new Product(id, "Product " + id, types[id % types.length], id % 10 + 1,
+                    date.plusDays(id % 365), date.plusDays(id % 365)));
+            if (batch.size() == 10_000) {
+                warehouse.newProducts(batch);
+                batch.clear();
+            }
+        }
+        warehouse.newProducts(batch);
+
+        if (checkpoint) {
+            warehouse.checkpoint();
+        }
+        warehouse.shutdown();
+    }
+
+    private long timeStartup(Path directory, int products) {
+        long start = System.nanoTime();
+        Warehouse warehouse = new Warehouse(directory, Duration.ZERO);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(warehouse.getAllProducts()).hasSize(products);
+        warehouse.shutdown();
+        return elapsed;
+    }
+}
@@ -1,17 +1,36 @@
 package org.laboration3;
 
 import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductBatchResult;
+import org.laboration3.entities.ProductQuery;
 import org.laboration3.entities.ProductType;
+import org.laboration3.entities.ProductVersion;
+import org.laboration3.service.StorageEngine;
 import org.laboration3.service.Warehouse;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 class WarehouseTest {
     Warehouse warehouse = new Warehouse();
@@ -343,6 +362,43 @@ class WarehouseTest {
         assertThat(productCountByLetter.get('C')).isEqualTo(1);
     }
 
+    @Test
+    void shouldRejectBatchProductsLikeSingleCreates() {
+        LocalDate now = LocalDate.now();
+
+        List<ProductBatchResult> results = warehouse.newProducts(List.of(
+                new Product(1, "   ", ProductType.WEAPON, 3, now, now),
+                new Product(2, "Shiv", null, 0, now, now)
+        ));
+
+        assertThat(results).extracting(ProductBatchResult::added).containsExactly(false, false);
+        assertThat(results.get(0).message()).isEqualTo("Product name cannot be null or empty");
+        assertThat(results.get(1).message()).startsWith("Validation errors: ").contains("Rating can not be less than 1; ");
+        assertThat(warehouse.findAllProducts()).isEmpty();
+    }
+
+    // Counted under the first char of the upper-cased name, which is not always the upper case of the first char.
+    @Test
+    void shouldCountStartingLettersOfUpperCasedNames() {
+        LocalDate now = LocalDate.now();
+
+        for (StorageEngine engine : StorageEngine.values()) {
+            Warehouse target = new Warehouse(engine);
+            target.newProduct(1, "\u00dfword", ProductType.WEAPON, 2, now, now);
+            target.newProduct(2, "spear", ProductType.WEAPON, 3, now, now);
+            target.newProduct(3, "\u0149ame", ProductType.ARTIFACT, 4, now, now);
+            target.newProduct(4, "\u00f6rb", ProductType.ARTIFACT, 5, now, now);
+            target.newProduct(5, "\ud801\udc28x", ProductType.ARMOR, 6, now, now);
+
+            assertThat(target.getProductMapWithStartingLettersAndCount()).isEqualTo(Map.of(
+                    'S', 2L,
+                    '\u02bc', 1L,
+                    '\u00d6', 1L,
+                    '\ud801', 1L));
+            target.shutdown();
+        }
+    }
+
     @Test
     void shouldThrowExceptionsNoProductsWithMaxRatingCreatedThisMonth() {
 
@@ -389,4 +445,544 @@ class WarehouseTest {
         assertThat(allProductsPaginated.get(0).name()).isEqualTo("Morning star");
         assertThat(allProductsPaginated.get(1).name()).isEqualTo("Broad sword");
     }
+
+    @Test
+    void shouldKeepPerIdUpdatesLinearizableUnderContention() throws Exception {
+        int writers = 8;
+        int readers = 4;
+        int updatesPerWriter = 5_000;
+        int ids = 4;
+        LocalDate date = LocalDate.of(2024, 7, 31);
+
+        for (int id = 1; id <= ids; id++) {
+            warehouse.newProduct(id, "-1:0", ProductType.WEAPON, 1, date, date);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+        List<Future<?>> writerTasks = new ArrayList<>();
+        List<Future<?>> readerTasks = new ArrayList<>();
+
+        for (int writer = 0; writer < writers; writer++) {
+            int writerId = writer;
+            writerTasks.add(executor.submit(() -> {
+                start.await();
+                for (int update = 1; update <= updatesPerWriter; update++) {
+                    int id = update % ids + 1;
+                    warehouse.modifyProduct(id, writerId + ":" + update, ProductType.ARMOR, update % 10 + 1);
+                }
+                return null;
+            }));
+        }
+
+        for (int reader = 0; reader < readers; reader++) {
+            readerTasks.add(executor.submit(() -> {
+                int[][] lastSeen = new int[ids + 1][writers];
+                start.await();
+                while (writing.get()) {
+                    for (int id = 1; id <= ids; id++) {
+                        Optional<Product> product = warehouse.getProductById(id);
+                        if (product.isEmpty()) {
+                            violations.add("Product " + id + " was missing");
+                            continue;
+                        }
+
+                        String[] version = product.get().name().split(":");
+                        int writerId = Integer.parseInt(version[0]);
+                        int update = Integer.parseInt(version[1]);
+                        if (writerId >= 0) {
+                            if (update < lastSeen[id][writerId]) {
+                                violations.add("Product " + id + " went back to an older update of writer " + writerId);
+                            }
+                            lastSeen[id][writerId] = update;
+                        }
+                    }
+
+                    if (warehouse.getAllProducts().size() != ids) {
+                        violations.add("Catalog did not contain exactly " + ids + " products");
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> task : writerTasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> task : readerTasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(violations).isEmpty();
+        assertThat(warehouse.getAllProducts())
+                .hasSize(ids)
+                .allSatisfy(product -> {
+                    assertThat(product.type()).isEqualTo(ProductType.ARMOR);
+                    assertThat(product.created()).isEqualTo(date);
+                    assertThat(product.modified()).isEqualTo(LocalDate.now());
+                });
+    }
+
+    @Test
+    void shouldAcceptExactlyOneOfConcurrentInsertsWithSameId() throws Exception {
+        int threads = 8;
+        LocalDate now = LocalDate.now();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger added = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int thread = 0; thread < threads; thread++) {
+            tasks.add(executor.submit(() -> {
+                start.await();
+                for (int id = 1; id <= 1_000; id++) {
+                    try {
+                        warehouse.newProduct(id, "Shiv", ProductType.WEAPON, 3, now, now);
+                        added.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // another thread already added this id
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(added.get()).isEqualTo(1_000);
+        assertThat(warehouse.getAllProducts()).hasSize(1_000);
+    }
+
+    @Test
+    void shouldMoveModifiedProductBetweenTypeIndexes() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 2, now, now);
+        warehouse.newProduct(2, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        warehouse.modifyProduct(2, "Chain mail", ProductType.ARMOR, 4);
+
+        assertThat(warehouse.getProductsByTypeSortedAtoZ(ProductType.WEAPON))
+                .extracting(Product::name)
+                .containsExactly("Morning star");
+        assertThat(warehouse.getProductsByTypeSortedAtoZ(ProductType.ARMOR))
+                .extracting(Product::name)
+                .containsExactly("Chain mail");
+        assertThat(warehouse.countProductsInCategory(ProductType.WEAPON)).isEqualTo(1);
+        assertThat(warehouse.getTypesWithAtLeastOneProduct())
+                .containsExactlyInAnyOrder(ProductType.WEAPON, ProductType.ARMOR);
+    }
+
+    @Test
+    void shouldKeepProductsWithSameNameInTypeIndex() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 2, now, now);
+        warehouse.newProduct(2, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThat(warehouse.getProductsByTypeSortedAtoZ(ProductType.WEAPON))
+                .extracting(Product::id)
+                .containsExactly(1, 2);
+    }
+
+    @Test
+    void shouldDropProductFromMaxRatedWhenRatingIsModified() {
+        LocalDate thisMonth = LocalDate.now();
+
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 10, thisMonth, thisMonth);
+        warehouse.newProduct(2, "Broad sword", ProductType.WEAPON, 10, thisMonth, thisMonth);
+
+        warehouse.modifyProduct(1, "Morning star", ProductType.WEAPON, 9);
+
+        assertThat(warehouse.getThisMonthsMaxRankedProductsNewestFirst())
+                .extracting(Product::id)
+                .containsExactly(2);
+    }
+
+    @Test
+    void shouldUpdateCountersWhenProductIsModified() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 2, now, now);
+        warehouse.newProduct(2, "broad sword", ProductType.WEAPON, 3, now, now);
+
+        warehouse.modifyProduct(1, "Banded mail", ProductType.ARMOR, 4);
+
+        assertThat(warehouse.getProductMapWithStartingLettersAndCount())
+                .containsExactly(Map.entry('B', 2L));
+        assertThat(warehouse.countProductsInCategory(ProductType.WEAPON)).isEqualTo(1);
+        assertThat(warehouse.countProductsInCategory(ProductType.ARMOR)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnProductsAfterCursorInInsertionOrder() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(5, "Morning star", ProductType.WEAPON, 10, now, now);
+        warehouse.newProduct(2, "Broad sword", ProductType.WEAPON, 10, now, now);
+        warehouse.newProduct(9, "Chain mail", ProductType.ARMOR, 9, now, now);
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThat(warehouse.getProductsAfter(0, 2))
+                .extracting(Product::id)
+                .containsExactly(5, 2);
+        assertThat(warehouse.getProductsAfter(2, 2))
+                .extracting(Product::id)
+                .containsExactly(9, 1);
+        assertThat(warehouse.getProductsAfter(1, 2)).isEmpty();
+    }
+
+    @Test
+    void shouldThrowExceptionWhenCursorIsUnknown() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThatThrownBy(() -> warehouse.getProductsAfter(7, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product with id: 7 not found");
+    }
+
+    @Test
+    void shouldBumpVersionsOfTheTypesTouchedByAChange() {
+        LocalDate now = LocalDate.now();
+        long catalog = warehouse.catalogVersion();
+        long weapons = warehouse.typeVersion(ProductType.WEAPON);
+        long armor = warehouse.typeVersion(ProductType.ARMOR);
+        long artifacts = warehouse.typeVersion(ProductType.ARTIFACT);
+
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThat(warehouse.catalogVersion()).isGreaterThan(catalog);
+        assertThat(warehouse.typeVersion(ProductType.WEAPON)).isGreaterThan(weapons);
+        assertThat(warehouse.typeVersion(ProductType.ARMOR)).isEqualTo(armor);
+
+        weapons = warehouse.typeVersion(ProductType.WEAPON);
+        warehouse.modifyProduct(1, "Chain mail", ProductType.ARMOR, 5);
+
+        assertThat(warehouse.typeVersion(ProductType.WEAPON)).isGreaterThan(weapons);
+        assertThat(warehouse.typeVersion(ProductType.ARMOR)).isGreaterThan(armor);
+        assertThat(warehouse.typeVersion(ProductType.ARTIFACT)).isEqualTo(artifacts);
+    }
+
+    @Test
+    void shouldReturnEmptyResultsInsteadOfThrowingWhenNothingMatches() {
+        LocalDate now = LocalDate.now();
+
+        assertThat(warehouse.findAllProducts()).isEmpty();
+        assertThat(warehouse.streamAllProducts()).isEmpty();
+
+        warehouse.newProduct(1, "Shiv", ProductType.WEAPON, 3, now, now);
+
+        assertThat(warehouse.findProductsAfter(7, 2)).isEmpty();
+        assertThat(warehouse.findProductsAfter(1, 2)).contains(List.of());
+        assertThat(warehouse.findProductsPage(2, 1)).isEmpty();
+        assertThat(warehouse.findProductsByTypeSortedAtoZ(ProductType.ARMOR)).isEmpty();
+        assertThat(warehouse.findProductsCreatedAfter(now)).isEmpty();
+        assertThat(warehouse.findAllModifiedProducts()).isEmpty();
+        assertThat(warehouse.countProductsOfType(ProductType.ARMOR)).isZero();
+        assertThat(warehouse.findThisMonthsMaxRankedProductsNewestFirst()).isEmpty();
+        assertThat(warehouse.findProductsByTypeSortedAtoZ(ProductType.WEAPON))
+                .extracting(Product::id)
+                .containsExactly(1);
+    }
+
+    @Test
+    void shouldAddValidProductsInBatchAndReportRejectedOnes() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(1, "Morning star", ProductType.WEAPON, 2, now, now);
+
+        List<ProductBatchResult> results = warehouse.newProducts(List.of(
+                new Product(2, "Shiv", ProductType.WEAPON, 3, now, now),
+                new Product(1, "Broad sword", ProductType.WEAPON, 4, now, now),
+                new Product(3, "", ProductType.ARMOR, 4, now, now),
+                new Product(4, "Chain mail", ProductType.ARMOR, 11, now, now),
+                new Product(2, "Shank", ProductType.WEAPON, 3, now, now),
+                new Product(5, "Chain mail", ProductType.ARMOR, 5, now, now)
+        ));
+
+        assertThat(results)
+                .extracting(ProductBatchResult::index, ProductBatchResult::id, ProductBatchResult::added)
+                .containsExactly(
+                        tuple(0, 2, true),
+                        tuple(1, 1, false),
+                        tuple(2, 3, false),
+                        tuple(3, 4, false),
+                        tuple(4, 2, false),
+                        tuple(5, 5, true)
+                );
+        assertThat(results.get(1).message()).isEqualTo("Product with id: 1 already exists");
+        assertThat(results.get(2).message())
+                .isEqualTo("Validation errors: Empty product name not allowed; ");
+        assertThat(results.get(3).message())
+                .isEqualTo("Validation errors: Rating can not be more than 10; ");
+        assertThat(results.get(4).message()).isEqualTo("Product with id: 2 appears more than once in the batch");
+        assertThat(warehouse.getAllProducts())
+                .extracting(Product::id)
+                .containsExactly(1, 2, 5);
+        assertThat(warehouse.countProductsInCategory(ProductType.ARMOR)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFindProductsByPrefixAndSubstringIgnoringCase() {
+        LocalDate now = LocalDate.now();
+
+        warehouse.newProduct(1, "Broad sword", ProductType.WEAPON, 2, now, now);
+        warehouse.newProduct(2, "Short sword", ProductType.WEAPON, 3, now, now);
+        warehouse.newProduct(3, "Swordfish", ProductType.ARTIFACT, 4, now, now);
+        warehouse.newProduct(4, "Shield", ProductType.ARMOR, 5, now, now);
+
+        assertThat(warehouse.findProductsByName("SWORD", false, 10))
+                .extracting(Product::id)
+                .containsExactly(3, 1, 2);
+        assertThat(warehouse.findProductsByName("sword", true, 10))
+                .extracting(Product::id)
+                .containsExactly(3);
+        assertThat(warehouse.findProductsByName("sh", false, 10))
+                .extracting(Product::id)
+                .containsExactly(4, 2, 3);
+        assertThat(warehouse.findProductsByName("d", false, 10))
+                .extracting(Product::id)
+                .containsExactly(1, 4, 2, 3);
+        assertThat(warehouse.findProductsByName("LD", false, 10))
+                .extracting(Product::id)
+                .containsExactly(4);
+        assertThat(warehouse.findProductsByName("sword", false, 2)).hasSize(2);
+        assertThat(warehouse.findProductsByName("axe", false, 10)).isEmpty();
+
+        warehouse.modifyProduct(3, "Tuna", ProductType.ARTIFACT, 4);
+
+        assertThat(warehouse.findProductsByName("sword", false, 10))
+                .extracting(Product::id)
+                .containsExactly(1, 2);
+        assertThat(warehouse.findProductsByName("tun", true, 10))
+                .extracting(Product::id)
+                .containsExactly(3);
+    }
+
+    @Test
+    void shouldAnswerQueriesFromTheMostSelectiveAccessPath() {
+        LocalDate now = LocalDate.now();
+        ProductType[] types = ProductType.values();
+        for (int id = 1; id <= 1_000; id++) {
+            LocalDate created = now.minusDays(id % 100);
+            warehouse.newProduct(id, "Product " + id, types[id % types.length], id % 10 + 1, created, created);
+        }
+
+        ProductQuery recentTopRated = new ProductQuery(null, 9, 10, now.minusDays(10), null, ProductQuery.Sort.NAME, 3);
+        ProductQuery weapons = new ProductQuery(ProductType.WEAPON, null, null, null, null, ProductQuery.Sort.RATING, 0);
+
+        assertThat(warehouse.explainQuery(recentTopRated)).startsWith("rating [9, 10]");
+        assertThat(warehouse.explainQuery(weapons)).startsWith("type WEAPON");
+        assertThat(warehouse.findProducts(recentTopRated)).isEqualTo(warehouse.findAllProducts().stream()
+                .filter(recentTopRated::matches)
+                .sorted(ProductQuery.Sort.NAME.comparator())
+                .limit(3)
+                .toList());
+        assertThat(warehouse.findProducts(weapons)).isEqualTo(warehouse.findAllProducts().stream()
+                .filter(product -> product.type() == ProductType.WEAPON)
+                .sorted(ProductQuery.Sort.RATING.comparator())
+                .toList());
+        assertThat(warehouse.findProducts(new ProductQuery(null, 11, null, null, null, null, 10))).isEmpty();
+
+        ProductQuery createdBetween = new ProductQuery(null, null, null, now.minusDays(20), now.minusDays(10),
+                ProductQuery.Sort.CREATED, 0);
+        assertThat(warehouse.explainQuery(createdBetween))
+                .isEqualTo("created after " + now.minusDays(20) + ", ~90 rows, by created");
+        assertThat(warehouse.findProducts(createdBetween)).isEqualTo(warehouse.findAllProducts().stream()
+                .filter(createdBetween::matches)
+                .sorted(ProductQuery.Sort.CREATED.comparator())
+                .toList());
+        assertThatThrownBy(() -> new ProductQuery(null, 5, 4, null, null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldKeepAggregatesUpToDateWhenProductsAreAddedAndModified() {
+        LocalDate now = LocalDate.now();
+        ProductType[] types = ProductType.values();
+        for (int id = 1; id <= 500; id++) {
+            LocalDate created = now.minusDays(id % 90);
+            warehouse.newProduct(id, "Product " + id, types[id % types.length], id % 10 + 1, created, created);
+        }
+        for (int id = 1; id <= 500; id += 9) {
+            warehouse.modifyProduct(id, "Renamed " + id, types[(id + 3) % types.length], 10);
+        }
+        List<Product> products = warehouse.findAllProducts();
+
+        Map<ProductType, Map<Integer, Long>> ratings = new EnumMap<>(ProductType.class);
+        for (ProductType type : types) {
+            ratings.put(type, new TreeMap<>());
+        }
+        products.forEach(product -> ratings.get(product.type()).merge(product.rating(), 1L, Long::sum));
+        assertThat(warehouse.findRatingDistributionByType()).isEqualTo(ratings);
+
+        LocalDate first = now.minusDays(40);
+        assertThat(warehouse.countProductsCreatedPerDay(first, now)).isEqualTo(products.stream()
+                .filter(product -> !product.created().isBefore(first))
+                .collect(Collectors.groupingBy(Product::created, TreeMap::new, Collectors.counting())));
+        assertThat(warehouse.countProductsCreatedPerMonth(YearMonth.from(now.minusDays(89)),
+                YearMonth.from(now)).values().stream().mapToLong(Long::longValue).sum()).isEqualTo(500);
+
+        Map<ProductType, List<Product>> newest = warehouse.findNewestProductsByType(3);
+        for (ProductType type : types) {
+            assertThat(newest.get(type)).isEqualTo(products.stream()
+                    .filter(product -> product.type() == type)
+                    .sorted(ProductQuery.Sort.NEWEST.comparator())
+                    .limit(3)
+                    .toList());
+        }
+    }
+
+    @Test
+    void shouldReturnTheSameProductsFromParallelScanAsFromSequentialScan() {
+        System.setProperty(Warehouse.PARALLEL_SCAN_THRESHOLD_PROPERTY, "1");
+        System.setProperty(Warehouse.SCAN_PARALLELISM_PROPERTY, "4");
+        Warehouse parallel = new Warehouse();
+        System.clearProperty(Warehouse.PARALLEL_SCAN_THRESHOLD_PROPERTY);
+        System.clearProperty(Warehouse.SCAN_PARALLELISM_PROPERTY);
+
+        LocalDate now = LocalDate.now();
+        ProductType[] types = ProductType.values();
+        List<Product> batch = new ArrayList<>();
+        for (int id = 1; id <= 50_000; id++) {
+            LocalDate created = now.minusDays(id % 30);
+            batch.add(new Product(id, "Product " + id, types[id % types.length], id % 10 + 1, created,
+                    id % 7 == 0 ? now : created));
+        }
+        try {
+            for (Warehouse target : List.of(warehouse, parallel)) {
+                target.newProducts(batch);
+            }
+
+            assertThat(parallel.findAllModifiedProducts())
+                    .hasSizeGreaterThan(1_000)
+                    .isEqualTo(warehouse.findAllModifiedProducts());
+            ProductQuery query = new ProductQuery(null, 4, null, null, null, ProductQuery.Sort.RATING, 100);
+            assertThat(parallel.findProducts(query)).isEqualTo(warehouse.findProducts(query));
+        } finally {
+            parallel.shutdown();
+        }
+
+        // The pool is gone, the scan runs on the calling thread.
+        assertThat(parallel.findAllModifiedProducts()).isEqualTo(warehouse.findAllModifiedProducts());
+    }
+
+    // Versions are timestamped in microseconds, so the clock has to move on between a read instant and a change.
+    private static Instant instantBeforeNextChange() {
+        Instant instant = Instant.now();
+        while (!Instant.now().isAfter(instant)) {
+            Thread.onSpinWait();
+        }
+        return instant;
+    }
+
+    @Test
+    void shouldReturnProductsAsTheyWereAtInstant() {
+        LocalDate now = LocalDate.now();
+        LocalDate lastWeek = now.minusDays(7);
+        warehouse.newProduct(1, "Iron sword", ProductType.WEAPON, 4, lastWeek, lastWeek);
+        warehouse.newProduct(2, "Oak shield", ProductType.ARMOR, 6, lastWeek, lastWeek);
+        Instant beforeChanges = instantBeforeNextChange();
+
+        warehouse.modifyProduct(1, "Steel sword", ProductType.WEAPON, 6);
+        Instant afterFirstChange = instantBeforeNextChange();
+        warehouse.modifyProduct(1, "Steel sword", ProductType.ARTIFACT, 9);
+        warehouse.newProduct(3, "Future orb", ProductType.ARTIFACT, 2, now.plusDays(1), now.plusDays(1));
+
+        assertThat(warehouse.getProductByIdAsOf(1, beforeChanges))
+                .contains(new Product(1, "Iron sword", ProductType.WEAPON, 4, lastWeek, lastWeek));
+        assertThat(warehouse.getProductByIdAsOf(1, afterFirstChange))
+                .contains(new Product(1, "Steel sword", ProductType.WEAPON, 6, lastWeek, now));
+        assertThat(warehouse.getProductByIdAsOf(1, Instant.now())).isEqualTo(warehouse.getProductById(1));
+        assertThat(warehouse.getProductByIdAsOf(3, Instant.now())).isEmpty();
+        assertThat(warehouse.getProductByIdAsOf(4, Instant.now())).isEmpty();
+        assertThat(warehouse.findAllProductsAsOf(beforeChanges))
+                .extracting(Product::id, Product::name, Product::rating)
+                .containsExactly(tuple(1, "Iron sword", 4), tuple(2, "Oak shield", 6));
+    }
+
+    @Test
+    void shouldListProductHistoryNewestFirst() {
+        LocalDate now = LocalDate.now();
+        LocalDate lastWeek = now.minusDays(7);
+        warehouse.newProduct(1, "Iron sword", ProductType.WEAPON, 4, lastWeek, lastWeek);
+        warehouse.modifyProduct(1, "Steel sword", ProductType.WEAPON, 6);
+        warehouse.modifyProduct(1, "Steel sword", ProductType.WEAPON, 6);
+        warehouse.modifyProduct(1, "Steel sword", ProductType.ARTIFACT, 9);
+
+        List<ProductVersion> history = warehouse.getProductHistory(1).orElseThrow();
+
+        assertThat(history)
+                .extracting(ProductVersion::product)
+                .containsExactly(
+                        new Product(1, "Steel sword", ProductType.ARTIFACT, 9, lastWeek, now),
+                        new Product(1, "Steel sword", ProductType.WEAPON, 6, lastWeek, now),
+                        new Product(1, "Iron sword", ProductType.WEAPON, 4, lastWeek, lastWeek));
+        assertThat(history.get(0).validUntil()).isNull();
+        assertThat(history.get(1).validUntil()).isEqualTo(history.get(0).validFrom());
+        assertThat(history.get(2).validUntil()).isEqualTo(history.get(1).validFrom());
+        assertThat(history.get(2).validFrom()).isNull();
+        assertThat(warehouse.getProductHistory(2)).isEmpty();
+    }
+
+    // Only the resource layer validates the rating range, the history keeps whatever rating the store accepted.
+    @Test
+    void shouldKeepRatingsBeyondTheValidatedRangeInHistory() {
+        Warehouse indexed = new Warehouse(StorageEngine.INDEXED);
+        LocalDate now = LocalDate.now();
+        indexed.newProduct(1, "Iron sword", ProductType.WEAPON, 300, now, now);
+        Instant beforeChange = instantBeforeNextChange();
+        indexed.modifyProduct(1, "Iron sword", ProductType.WEAPON, 6);
+
+        assertThat(indexed.getProductByIdAsOf(1, beforeChange)).map(Product::rating).contains(300);
+        assertThat(indexed.getProductHistory(1).orElseThrow())
+                .extracting(version -> version.product().rating())
+                .containsExactly(6, 300);
+        indexed.shutdown();
+    }
+
+    @Test
+    void shouldRejectAsOfReadsBeforeHistoryIsKept() {
+        LocalDate now = LocalDate.now();
+        warehouse.newProduct(1, "Iron sword", ProductType.WEAPON, 4, now.minusDays(7), now.minusDays(7));
+
+        assertThatThrownBy(() -> warehouse.getProductByIdAsOf(1, warehouse.historyKeptSince().minusSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product history is only kept since " + warehouse.historyKeptSince());
+    }
+
+    @Test
+    void shouldDropOldestVersionsBeyondHistoryCapacity() {
+        System.setProperty(Warehouse.HISTORY_CAPACITY_PROPERTY, "2");
+        Warehouse bounded = new Warehouse();
+        System.clearProperty(Warehouse.HISTORY_CAPACITY_PROPERTY);
+
+        LocalDate now = LocalDate.now();
+        bounded.newProduct(1, "Iron sword", ProductType.WEAPON, 4, now.minusDays(7), now.minusDays(7));
+        Instant beforeChanges = instantBeforeNextChange();
+        bounded.modifyProduct(1, "Steel sword", ProductType.WEAPON, 5);
+        bounded.modifyProduct(1, "Steel sword", ProductType.WEAPON, 6);
+        Instant beforeLastChange = instantBeforeNextChange();
+        bounded.modifyProduct(1, "Steel sword", ProductType.WEAPON, 7);
+
+        assertThat(bounded.getProductHistory(1).orElseThrow())
+                .extracting(version -> version.product().rating())
+                .containsExactly(7, 6, 5);
+        assertThat(bounded.getProductByIdAsOf(1, beforeLastChange)).map(Product::rating).contains(6);
+        assertThatThrownBy(() -> bounded.getProductByIdAsOf(1, beforeChanges))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> bounded.findAllProductsAsOf(beforeChanges))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 }
\ No newline at end of file
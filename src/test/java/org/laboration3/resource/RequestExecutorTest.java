@@ -0,0 +1,47 @@
+package org.laboration3.resource;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestExecutorTest {
+
+    @Test
+    void shouldRejectStreamsPastTheLimitUntilOneEnds() throws InterruptedException {
+        System.setProperty(RequestExecutor.MAX_STREAMS_PROPERTY, "2");
+        RequestExecutor executor;
+        try {
+            executor = new RequestExecutor(RequestExecutor.Threads.CONTAINER);
+        } finally {
+            System.clearProperty(RequestExecutor.MAX_STREAMS_PROPERTY);
+        }
+
+        CountDownLatch open = new CountDownLatch(1);
+        CountDownLatch streaming = new CountDownLatch(2);
+        Runnable stream = () -> {
+            streaming.countDown();
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            assertThat(executor.start(stream)).isTrue();
+            assertThat(executor.start(stream)).isTrue();
+            streaming.await();
+            assertThat(executor.start(stream)).isFalse();
+
+            open.countDown();
+            CountDownLatch ran = new CountDownLatch(1);
+            while (!executor.start(ran::countDown)) {
+                Thread.sleep(1);
+            }
+            ran.await();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
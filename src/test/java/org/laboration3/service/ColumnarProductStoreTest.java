@@ -0,0 +1,47 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarProductStoreTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Test
+    void shouldReuseTheNameBufferWhenProductsAreModified() {
+        ColumnarProductStore store = new ColumnarProductStore();
+        for (int id = 1; id <= 1_000; id++) {
+            store.insert(new Product(id, "Product " + id, ProductType.WEAPON, 5, TODAY, TODAY));
+        }
+        rename(store, 0);
+        int capacity = store.nameBytesCapacity();
+
+        for (int round = 1; round < 100; round++) {
+            rename(store, round);
+        }
+
+        assertThat(store.nameBytesCapacity()).isEqualTo(capacity);
+        assertThat(store.get(2).name()).isEqualTo("Product 2");
+        assertThat(store.get(999).name()).isEqualTo("Renamed 999 1");
+        assertThat(store.get(1_000).rating()).isEqualTo(9);
+        assertThat(store.searchByName("renamed 999", false, 10))
+                .extracting(Product::id)
+                .containsExactly(999);
+        assertThat(store.searchByName("duct 99", false, 10))
+                .extracting(Product::id)
+                .containsExactly(990, 992, 994, 996, 998);
+    }
+
+    // Every other product keeps its name, the others alternate between two new names.
+    private static void rename(ColumnarProductStore store, int round) {
+        for (int id = 1; id <= 1_000; id++) {
+            String name = id % 2 == 0 ? "Product " + id : "Renamed " + id + " " + round % 2;
+            store.replace(new Product(id, name, ProductType.ARMOR, round % 10, TODAY, TODAY));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.laboration3.service;
+
+import org.laboration3.entities.Product;
+import org.laboration3.entities.ProductBatchResult;
+import org.laboration3.entities.ProductType;
+import org.laboration3.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Writes must find their product by id and never walk the catalog, so their cost does not grow with it. How that cost
+// develops from 1k to 10M products is measured by WarehouseBenchmark.newProduct and modifyProduct.
+class WarehouseWritePathTest {
+
+    @Test
+    void shouldAddAndModifyProductsWithoutScanningTheCatalog() {
+        for (StorageEngine engine : StorageEngine.values()) {
+            ProductStore store = Mockito.spy(engine.createStore());
+            Warehouse warehouse = new Warehouse(store, new MetricRegistry());
+            LocalDate now = LocalDate.now();
+            for (int id = 1; id <= 1_000; id++) {
+                warehouse.newProduct(id, "Product " + id, ProductType.WEAPON, 5, now, now);
+            }
+            Mockito.clearInvocations(store);
+
+            warehouse.newProduct(1_001, "Product 1001", ProductType.ARMOR, 5, now, now);
+            warehouse.modifyProduct(500, "Modified 500", ProductType.ARTIFACT, 7);
+
+            assertThat(warehouse.getProductById(500)).map(product -> product.name()).contains("Modified 500");
+            verify(store, never()).products();
+            verify(store, never()).productsStoredSoFar();
+            verify(store, never()).productsBetween(anyLong(), anyLong());
+            verify(store, never()).productsAfter(anyInt());
+            verify(store, never()).byTypeSortedByName(any());
+            verify(store, never()).createdAfter(any());
+            warehouse.shutdown();
+        }
+    }
+
+    @Test
+    void shouldRejectModificationsTheStoreCannotHoldBeforeLoggingThem() {
+        ProductStore store = Mockito.spy(StorageEngine.COLUMNAR.createStore());
+        Warehouse warehouse = new Warehouse(store, new MetricRegistry());
+        LocalDate now = LocalDate.now();
+        warehouse.newProduct(1, "Product 1", ProductType.WEAPON, 5, now, now);
+        doThrow(new IllegalArgumentException("No room left for product names")).when(store).checkStorable(any());
+
+        assertThatThrownBy(() -> warehouse.modifyProduct(1, "Renamed 1", ProductType.ARMOR, 7))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No room left for product names");
+        verify(store, never()).replace(any());
+        assertThat(warehouse.getProductHistory(1)).hasValueSatisfying(versions -> assertThat(versions).hasSize(1));
+        warehouse.shutdown();
+    }
+
+    @Test
+    void shouldKeepModifiedProductsVisibleToConcurrentReaders() throws InterruptedException {
+        for (StorageEngine engine : StorageEngine.values()) {
+            Warehouse warehouse = new Warehouse(engine);
+            LocalDate now = LocalDate.now();
+            for (int id = 1; id <= 100; id++) {
+                warehouse.newProduct(id, "Product " + id, ProductType.WEAPON, 10, now, now);
+            }
+
+            Thread writer = new Thread(() -> {
+                for (int round = 0; round < 20_000; round++) {
+                    warehouse.modifyProduct(50, "Renamed " + round % 2, ProductType.WEAPON, 10);
+                }
+            });
+            writer.start();
+            while (writer.isAlive()) {
+                assertThat(warehouse.findProductsByTypeSortedAtoZ(ProductType.WEAPON)).extracting(Product::id)
+                        .contains(50);
+                assertThat(warehouse.findProductsCreatedAfter(now.minusDays(1))).extracting(Product::id)
+                        .contains(50);
+                assertThat(warehouse.findThisMonthsMaxRankedProductsNewestFirst()).extracting(Product::id)
+                        .contains(50);
+            }
+            writer.join();
+            warehouse.shutdown();
+        }
+    }
+
+    @Test
+    void shouldNotLogProductsTheStoreRejects(@TempDir Path directory) {
+        ProductStore store = Mockito.spy(StorageEngine.INDEXED.createStore());
+        Warehouse warehouse = new Warehouse(store, directory, Duration.ofMillis(1));
+        LocalDate now = LocalDate.now();
+        warehouse.newProduct(1, "Product 1", ProductType.WEAPON, 5, now, now);
+        doThrow(new IllegalStateException("Store is full")).when(store).insert(any());
+
+        assertThatThrownBy(() -> warehouse.newProduct(2, "Product 2", ProductType.WEAPON, 5, now, now))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Store is full");
+        assertThat(warehouse.newProducts(List.of(new Product(3, "Product 3", ProductType.ARMOR, 5, now, now))))
+                .extracting(ProductBatchResult::added)
+                .containsExactly(false);
+        warehouse.shutdown();
+
+        Warehouse reopened = new Warehouse(StorageEngine.INDEXED, directory, Duration.ofMillis(1));
+        assertThat(reopened.getAllProducts()).extracting(Product::id).containsExactly(1);
+        reopened.shutdown();
+    }
+}